@@ -0,0 +1,42 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache-stampede")
+@Data
+public class CacheStampedeProperties {
+
+    /**
+     * 缓存重建的互斥方式：local只合并本节点的并发请求，redis再用分布式锁保证集群内只有一个节点重建
+     */
+    private String lockMode = "local";
+
+    /**
+     * 分布式锁的过期时间(毫秒)，应大于一次重建的最长耗时
+     */
+    private long lockTimeoutMsec = 10000;
+
+    /**
+     * 未拿到分布式锁时等待其他节点重建的最长时间(毫秒)，超时后自行查询数据库
+     */
+    private long waitTimeoutMsec = 3000;
+
+    /**
+     * 概率提前刷新系数，越大越早刷新，0表示不提前刷新
+     */
+    private double earlyRefreshBeta = 1.0;
+
+    /**
+     * 缓存失效后是否先返回上一版本的数据，同时在后台重建
+     */
+    private boolean staleWhileRevalidate = false;
+
+    /**
+     * 后台刷新缓存的线程数
+     */
+    private int refreshThreads = 2;
+
+}
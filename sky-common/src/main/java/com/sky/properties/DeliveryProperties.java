@@ -0,0 +1,26 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.delivery")
+@Data
+public class DeliveryProperties {
+
+    private int maxDistance = 5000; //最大配送距离(米)
+
+    /**
+     * 收货地址坐标缓存配置
+     */
+    private long coordinateCacheSize = 10000;
+    private long coordinateExpireHours = 24;
+
+    /**
+     * 配送距离缓存配置
+     */
+    private long distanceCacheSize = 10000;
+    private long distanceExpireHours = 24;
+
+}
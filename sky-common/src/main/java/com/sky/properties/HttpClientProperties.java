@@ -0,0 +1,27 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.http-client")
+@Data
+public class HttpClientProperties {
+
+    /**
+     * 连接池配置
+     */
+    private int maxTotal = 200; //最大连接数
+    private int maxPerRoute = 50; //每个目标主机的最大连接数
+    private long idleEvictSeconds = 30; //空闲连接的回收时间(秒)
+    private int validateAfterInactivityMsec = 2000; //连接空闲超过该时间后复用前先校验(毫秒)
+
+    /**
+     * 超时配置(毫秒)
+     */
+    private int connectTimeout = 5000; //建立连接超时
+    private int socketTimeout = 5000; //读取数据超时
+    private int connectionRequestTimeout = 1000; //从连接池获取连接超时
+
+}
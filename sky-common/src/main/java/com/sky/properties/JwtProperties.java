@@ -23,4 +23,11 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 已校验令牌缓存配置
+     */
+    private long tokenCacheSize = 10000; //缓存的最大令牌数
+    private long tokenCacheSeconds = 600; //校验通过的令牌缓存时间(秒)，不超过令牌本身的过期时间
+    private long invalidTokenCacheSeconds = 60; //校验失败的令牌缓存时间(秒)
+
 }
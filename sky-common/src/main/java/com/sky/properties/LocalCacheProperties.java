@@ -0,0 +1,22 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.local-cache")
+@Data
+public class LocalCacheProperties {
+
+    /**
+     * 每个缓存在本地内存中最多保存的条数
+     */
+    private long maximumSize = 1000;
+
+    /**
+     * 本地缓存的过期时间(秒)，失效通知丢失时最多在该时间后与Redis一致
+     */
+    private long expireSeconds = 300;
+
+}
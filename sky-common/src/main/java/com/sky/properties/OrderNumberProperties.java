@@ -0,0 +1,21 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-number")
+@Data
+public class OrderNumberProperties {
+
+    /**
+     * 节点编号(0~1023)，小于0时启动时从Redis租用一个空闲编号
+     */
+    private long workerId = -1;
+
+    private long workerLeaseSeconds = 60; //Redis中节点编号的租约时间(秒)
+
+    private long epoch = 1672531200000L; //订单号时间戳的起始时间，2023-01-01 00:00:00 +08:00
+
+}
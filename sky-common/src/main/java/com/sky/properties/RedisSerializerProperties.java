@@ -0,0 +1,17 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.redis-serializer")
+@Data
+public class RedisSerializerProperties {
+
+    /**
+     * 序列化后超过该大小(字节)的数据进行gzip压缩，小于等于0表示不压缩
+     */
+    private int compressThreshold = 1024;
+
+}
@@ -0,0 +1,24 @@
+package com.sky.result;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 封装游标分页查询结果
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResult implements Serializable {
+
+    private List records; //当前页数据集合
+
+    private String nextCursor; //下一页游标，为null表示没有更多数据
+
+    private Long total; //总记录数，未要求统计时为null
+
+}
@@ -0,0 +1,109 @@
+package com.sky.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 批量加载工具，参考DataLoader
+ * 先登记需要的id，首次取值时用一次批量查询加载所有登记过且尚未加载的id，结果在本实例内缓存；
+ * 实例不是线程安全的，按一次请求或一次方法调用创建，不要作为单例共享
+ */
+public class BatchLoader<K, V> {
+
+    private final Function<List<K>, Map<K, V>> batchFunction;
+
+    //没有数据的id对应的值，每次调用生成新的实例
+    private final Supplier<V> defaultValue;
+
+    private final Map<K, V> loaded = new HashMap<>();
+
+    private final Set<K> queued = new LinkedHashSet<>();
+
+    public BatchLoader(Function<List<K>, Map<K, V>> batchFunction, Supplier<V> defaultValue) {
+        this.batchFunction = batchFunction;
+        this.defaultValue = defaultValue;
+    }
+
+    /**
+     * 按外键分组的一对多加载，例如菜品id -> 口味列表，没有数据的id得到空列表
+     * @param batchQuery 根据id批量查询子数据
+     * @param keyExtractor 从子数据中取出所属的id
+     * @return
+     */
+    public static <K, E> BatchLoader<K, List<E>> grouping(Function<List<K>, List<E>> batchQuery,
+                                                          Function<E, K> keyExtractor) {
+        return new BatchLoader<>(keys -> batchQuery.apply(keys).stream()
+                .collect(Collectors.groupingBy(keyExtractor)), ArrayList::new);
+    }
+
+    /**
+     * 登记需要加载的id，不立即查询
+     * @param keys
+     * @return
+     */
+    public BatchLoader<K, V> prime(Collection<K> keys) {
+        for (K key : keys) {
+            if (key != null && !loaded.containsKey(key)) {
+                queued.add(key);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 获取单个id的数据，尚未加载时连同其他已登记的id一起批量查询
+     * @param key
+     * @return
+     */
+    public V load(K key) {
+        if (key == null) {
+            return defaultValue.get();
+        }
+        if (!loaded.containsKey(key)) {
+            queued.add(key);
+            dispatch();
+        }
+        return loaded.get(key);
+    }
+
+    /**
+     * 获取多个id的数据，尚未加载的id合并为一次批量查询
+     * @param keys
+     * @return
+     */
+    public Map<K, V> loadMany(Collection<K> keys) {
+        prime(keys);
+        dispatch();
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            if (key != null) {
+                result.put(key, loaded.get(key));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量查询所有已登记且尚未加载的id
+     */
+    public void dispatch() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        List<K> keys = new ArrayList<>(queued);
+        queued.clear();
+        Map<K, V> values = batchFunction.apply(keys);
+        for (K key : keys) {
+            V value = values.get(key);
+            loaded.put(key, value == null ? defaultValue.get() : value);
+        }
+    }
+}
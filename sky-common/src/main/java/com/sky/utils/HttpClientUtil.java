@@ -7,10 +7,12 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
@@ -19,14 +21,39 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Http工具类
+ * 所有请求共用一个带连接池的客户端，复用长连接；Spring环境下由配置类注入按配置创建的客户端
  */
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    //共享的客户端，未注入时使用默认配置的连接池客户端
+    private static volatile CloseableHttpClient httpClient;
+
+    //正在执行的请求数
+    private static final AtomicInteger IN_FLIGHT_REQUESTS = new AtomicInteger();
+
+    /**
+     * 设置共享的客户端
+     * @param client
+     */
+    public static void setHttpClient(CloseableHttpClient client) {
+        httpClient = client;
+    }
+
+    /**
+     * 获取正在执行的请求数
+     * @return
+     */
+    public static int getInFlightRequests() {
+        return IN_FLIGHT_REQUESTS.get();
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,9 +61,6 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
         String result = "";
         CloseableHttpResponse response = null;
 
@@ -53,7 +77,7 @@ public class HttpClientUtil {
             HttpGet httpGet = new HttpGet(uri);
 
             //发送请求
-            response = httpClient.execute(httpGet);
+            response = execute(httpGet);
 
             //判断响应状态
             if(response.getStatusLine().getStatusCode() == 200){
@@ -62,12 +86,8 @@ public class HttpClientUtil {
         }catch (Exception e){
             e.printStackTrace();
         }finally {
-            try {
-                response.close();
-                httpClient.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            //关闭响应，连接归还连接池
+            closeResponse(response);
         }
 
         return result;
@@ -81,8 +101,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -101,20 +119,15 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = execute(httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            //关闭响应，连接归还连接池
+            closeResponse(response);
         }
 
         return resultString;
@@ -128,8 +141,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -151,24 +162,63 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = execute(httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
-            try {
-                response.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            //关闭响应，连接归还连接池
+            closeResponse(response);
         }
 
         return resultString;
     }
+    /**
+     * 使用共享的客户端执行请求，请求从发出到响应关闭期间计入正在执行的请求数
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    private static CloseableHttpResponse execute(HttpUriRequest request) throws IOException {
+        IN_FLIGHT_REQUESTS.incrementAndGet();
+        try {
+            return getHttpClient().execute(request);
+        } catch (IOException | RuntimeException e) {
+            IN_FLIGHT_REQUESTS.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private static void closeResponse(CloseableHttpResponse response) {
+        if (response == null) {
+            return;
+        }
+        IN_FLIGHT_REQUESTS.decrementAndGet();
+        try {
+            response.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static CloseableHttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (HttpClientUtil.class) {
+                if (httpClient == null) {
+                    httpClient = HttpClients.custom()
+                            .setConnectionManager(new PoolingHttpClientConnectionManager())
+                            .setDefaultRequestConfig(builderRequestConfig())
+                            .evictIdleConnections(30, TimeUnit.SECONDS)
+                            .evictExpiredConnections()
+                            .build();
+                }
+            }
+        }
+        return httpClient;
+    }
+
     private static RequestConfig builderRequestConfig() {
         return RequestConfig.custom()
                 .setConnectTimeout(TIMEOUT_MSEC)
@@ -2,11 +2,14 @@ package com.sky.utils;
 
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.HttpClientProperties;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -17,10 +20,12 @@ import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.Signature;
 import java.security.cert.X509Certificate;
@@ -28,11 +33,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 微信支付工具类
  */
 @Component
+@Slf4j
 public class WeChatPayUtil {
 
     //微信支付下单接口地址
@@ -41,35 +50,123 @@ public class WeChatPayUtil {
     //申请退款接口地址
     public static final String REFUNDS = "https://api.mch.weixin.qq.com/v3/refund/domestic/refunds";
 
+    //证书更新后旧客户端延迟关闭的时间(秒)，等待正在进行的请求完成
+    private static final long CLOSE_GRACE_SECONDS = 60;
+
+    //延迟关闭被替换的旧客户端
+    private static final ScheduledExecutorService CLIENT_CLOSER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "wechat-pay-client-closer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     @Autowired
     private WeChatProperties weChatProperties;
 
+    @Autowired
+    private HttpClientProperties httpClientProperties;
+
+    //签名客户端和商户私钥，证书文件未变化时一直复用
+    private volatile SigningMaterial signingMaterial;
+
+    //Signature对象不是线程安全的，每个线程复用一个
+    private static final ThreadLocal<Signature> SIGNATURE = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withRSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     /**
-     * 获取调用微信接口的客户端工具对象
+     * 获取签名客户端和商户私钥，商户私钥或平台证书文件被修改后重新加载
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
+    private SigningMaterial getSigningMaterial() throws IOException {
+        File privateKeyFile = new File(weChatProperties.getPrivateKeyFilePath());
+        File certFile = new File(weChatProperties.getWeChatPayCertFilePath());
+
+        SigningMaterial current = signingMaterial;
+        if (current != null && current.isUpToDate(privateKeyFile, certFile)) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = signingMaterial;
+            if (current == null || !current.isUpToDate(privateKeyFile, certFile)) {
+                SigningMaterial replaced = current;
+                current = loadSigningMaterial(privateKeyFile, certFile);
+                signingMaterial = current;
+                if (replaced != null) {
+                    CLIENT_CLOSER.schedule(() -> closeQuietly(replaced.getHttpClient()),
+                            CLOSE_GRACE_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 应用关闭时关闭当前客户端
+     */
+    @PreDestroy
+    public void destroy() {
+        SigningMaterial current = signingMaterial;
+        if (current != null) {
+            closeQuietly(current.getHttpClient());
+        }
+    }
+
+    private static void closeQuietly(CloseableHttpClient httpClient) {
         try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("关闭微信支付客户端失败", e);
+        }
+    }
+
+    /**
+     * 加载商户私钥和平台证书，构造调用微信接口的客户端工具对象
+     *
+     * @param privateKeyFile
+     * @param certFile
+     * @return
+     */
+    private SigningMaterial loadSigningMaterial(File privateKeyFile, File certFile) throws IOException {
+        long privateKeyModified = privateKeyFile.lastModified();
+        long certModified = certFile.lastModified();
+
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        try (FileInputStream privateKeyIn = new FileInputStream(privateKeyFile);
+             FileInputStream certIn = new FileInputStream(certFile)) {
             //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
+            merchantPrivateKey = PemUtil.loadPrivateKey(privateKeyIn);
             //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+            x509Certificate = PemUtil.loadCertificate(certIn);
+        }
+        //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+        List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
 
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
+        WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(wechatPayCertificates);
+        //复用长连接并回收空闲连接，连接池大小和超时时间与共享Http客户端一致
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(httpClientProperties.getConnectTimeout())
+                .setSocketTimeout(httpClientProperties.getSocketTimeout())
+                .setConnectionRequestTimeout(httpClientProperties.getConnectionRequestTimeout())
+                .build();
+        builder.setMaxConnTotal(httpClientProperties.getMaxTotal())
+                .setMaxConnPerRoute(httpClientProperties.getMaxPerRoute())
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(httpClientProperties.getIdleEvictSeconds(), TimeUnit.SECONDS);
 
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
-            return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
-        }
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        CloseableHttpClient httpClient = builder.build();
+        return new SigningMaterial(httpClient, merchantPrivateKey, privateKeyModified, certModified);
     }
 
     /**
@@ -80,7 +177,7 @@ public class WeChatPayUtil {
      * @return
      */
     private String post(String url, String body) throws Exception {
-        CloseableHttpClient httpClient = getClient();
+        CloseableHttpClient httpClient = getSigningMaterial().getHttpClient();
 
         HttpPost httpPost = new HttpPost(url);
         httpPost.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
@@ -93,7 +190,7 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
+            //只关闭响应，客户端长期复用
             response.close();
         }
     }
@@ -105,7 +202,7 @@ public class WeChatPayUtil {
      * @return
      */
     private String get(String url) throws Exception {
-        CloseableHttpClient httpClient = getClient();
+        CloseableHttpClient httpClient = getSigningMaterial().getHttpClient();
 
         HttpGet httpGet = new HttpGet(url);
         httpGet.addHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.toString());
@@ -117,7 +214,7 @@ public class WeChatPayUtil {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
+            //只关闭响应，客户端长期复用
             response.close();
         }
     }
@@ -187,8 +284,8 @@ public class WeChatPayUtil {
             String signMessage = stringBuilder.toString();
             byte[] message = signMessage.getBytes();
 
-            Signature signature = Signature.getInstance("SHA256withRSA");
-            signature.initSign(PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath()))));
+            Signature signature = SIGNATURE.get();
+            signature.initSign(getSigningMaterial().getPrivateKey());
             signature.update(message);
             String packageSign = Base64.getEncoder().encodeToString(signature.sign());
 
@@ -232,4 +329,33 @@ public class WeChatPayUtil {
         //调用申请退款接口
         return post(REFUNDS, body);
     }
+
+    /**
+     * 签名客户端、商户私钥及其对应的文件修改时间
+     */
+    private static class SigningMaterial {
+        private final CloseableHttpClient httpClient;
+        private final PrivateKey privateKey;
+        private final long privateKeyModified;
+        private final long certModified;
+
+        SigningMaterial(CloseableHttpClient httpClient, PrivateKey privateKey, long privateKeyModified, long certModified) {
+            this.httpClient = httpClient;
+            this.privateKey = privateKey;
+            this.privateKeyModified = privateKeyModified;
+            this.certModified = certModified;
+        }
+
+        boolean isUpToDate(File privateKeyFile, File certFile) {
+            return privateKeyFile.lastModified() == privateKeyModified && certFile.lastModified() == certModified;
+        }
+
+        CloseableHttpClient getHttpClient() {
+            return httpClient;
+        }
+
+        PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+    }
 }
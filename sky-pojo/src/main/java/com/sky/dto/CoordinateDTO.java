@@ -0,0 +1,28 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CoordinateDTO implements Serializable {
+    //纬度
+    private String lat;
+
+    //经度
+    private String lng;
+
+    /**
+     * 转换为地图接口使用的"纬度,经度"格式
+     * @return
+     */
+    public String toLatLng() {
+        return lat + "," + lng;
+    }
+}
@@ -0,0 +1,39 @@
+package com.sky.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Data
+public class OrdersCursorQueryDTO implements Serializable {
+
+    //上一页返回的游标，为空表示查询第一页
+    private String cursor;
+
+    private int pageSize;
+
+    //是否同时统计总记录数
+    private Boolean withTotal;
+
+    private String number;
+
+    private  String phone;
+
+    private Integer status;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime beginTime;
+
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime endTime;
+
+    private Long userId;
+
+    //由游标解析得到的上一页最后一条订单的下单时间和id
+    private LocalDateTime cursorOrderTime;
+
+    private Long cursorId;
+
+}
@@ -0,0 +1,41 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日营业数据汇总
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyBusinessStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    //统计日期(订单按下单日期、用户按注册日期归属)
+    private LocalDate statDate;
+
+    //订单总数
+    private Integer orderCount;
+
+    //有效订单数(已完成)
+    private Integer validOrderCount;
+
+    //营业额(已完成订单金额)
+    private BigDecimal turnover;
+
+    //新增用户数
+    private Integer newUsers;
+
+    //更新时间
+    private LocalDateTime updateTime;
+}
@@ -6,15 +6,18 @@ import com.sky.context.BaseContext;
 import com.sky.enumeration.OperationType;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.Signature;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @program: CqWorkspace
@@ -26,6 +29,10 @@ import java.time.LocalDateTime;
 @Component
 @Slf4j
 public class AutoFillAspect {
+
+    //实体类 -> 公共字段的setter，每个类只在第一次填充时通过反射查找一次
+    private static final Map<Class<?>, Setters> SETTERS = new ConcurrentHashMap<>();
+
     /*
     * 切入点
     * */
@@ -35,54 +42,83 @@ public class AutoFillAspect {
     /*
     * 前置通知,在通知中进行公共字段的赋值
     * */
-    @Before("autoFillPointCut()")
-    public void autoFill(JoinPoint joinPoint){
-        log.info("开始进行公共字段自动填充...");
-
-        //获取到当前被拦截的方法上的数据库操作类型
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature(); //方法签名对象
-        AutoFill autoFill = signature.getMethod().getAnnotation(AutoFill.class); //获得方法上的注解对象
-        OperationType operationType = autoFill.value(); //获得数据库操作类型
-
+    @Before("autoFillPointCut() && @annotation(autoFill)")
+    public void autoFill(JoinPoint joinPoint, AutoFill autoFill){
         //获取到当前被拦截的方法的参数
         Object[] args = joinPoint.getArgs();
-        if(args == null || args.length == 0){
+        if(args == null || args.length == 0 || args[0] == null){
             return;
         }
 
-        Object entity = args[0];
-
         //准备赋值的数据
+        OperationType operationType = autoFill.value(); //获得数据库操作类型
         LocalDateTime now = LocalDateTime.now();
         Long id = BaseContext.getCurrentId();
 
-        //根据当前不同的操作类型，为对应的属性通过反射来赋值
-        if(operationType == OperationType.INSERT){
-            //为4个公共字段赋值
-            try {
-                Method setCreateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-                Method setCreateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+        //批量插入时为集合中的每个对象赋值；只对标注了@AutoFill的方法生效，
+        //现有的insertBatch(口味、套餐菜品、订单明细、购物车)都没有标注，行为不变，
+        //新增标注前要确认调用方没有自行设置这些字段，否则会被覆盖
+        Object arg = args[0];
+        if(arg instanceof Collection){
+            for (Object entity : (Collection<?>) arg) {
+                fill(entity, operationType, now, id);
+            }
+        } else {
+            fill(arg, operationType, now, id);
+        }
+    }
 
-                //通过反射为对象属性进行赋值
-                setCreateTime.invoke(entity,now);
-                setUpdateTime.invoke(entity,now);
-                setCreateUser.invoke(entity,id);
-                setUpdateUser.invoke(entity,id);
-            } catch (Exception e) {
-                e.printStackTrace();
+    private void fill(Object entity, OperationType operationType, LocalDateTime now, Long id){
+        if(entity == null){
+            return;
+        }
+        Setters setters = SETTERS.computeIfAbsent(entity.getClass(), Setters::new);
+        try {
+            //根据当前不同的操作类型，为对应的属性赋值
+            if(operationType == OperationType.INSERT){
+                //插入时再为创建时间、创建人赋值
+                setters.set(setters.createTime, entity, now);
+                setters.set(setters.createUser, entity, id);
             }
+            //为修改时间、修改人赋值
+            setters.set(setters.updateTime, entity, now);
+            setters.set(setters.updateUser, entity, id);
+        } catch (Throwable e) {
+            log.error("公共字段自动填充失败: {}", entity.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * 某个实体类的公共字段setter，类型已适配为(Object, Object)void，调用时不再反射
+     */
+    private static class Setters {
+        private final MethodHandle createTime;
+        private final MethodHandle createUser;
+        private final MethodHandle updateTime;
+        private final MethodHandle updateUser;
+
+        Setters(Class<?> entityClass) {
+            createTime = find(entityClass, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            createUser = find(entityClass, AutoFillConstant.SET_CREATE_USER, Long.class);
+            updateTime = find(entityClass, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            updateUser = find(entityClass, AutoFillConstant.SET_UPDATE_USER, Long.class);
         }
-        else if(operationType == OperationType.UPDATE){
-            //为2个公共字段赋值
+
+        private static MethodHandle find(Class<?> entityClass, String name, Class<?> parameterType) {
             try {
-                Method setUpdateTime = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-                Method setUpdateUser = entity.getClass().getDeclaredMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-                setUpdateTime.invoke(entity,now);
-                setUpdateUser.invoke(entity,id);
-            } catch (Exception e) {
-                e.printStackTrace();
+                return MethodHandles.publicLookup()
+                        .findVirtual(entityClass, name, MethodType.methodType(void.class, parameterType))
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                //没有该公共字段的实体类跳过赋值
+                log.warn("实体类{}没有公共字段方法{}", entityClass.getName(), name);
+                return null;
+            }
+        }
+
+        void set(MethodHandle setter, Object entity, Object value) throws Throwable {
+            if (setter != null) {
+                setter.invokeExact(entity, value);
             }
         }
     }
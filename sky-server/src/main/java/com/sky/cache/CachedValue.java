@@ -0,0 +1,25 @@
+package com.sky.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 带重建耗时和过期时间的缓存数据，用于概率提前刷新
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CachedValue<T> implements Serializable {
+
+    //缓存的数据
+    private T value;
+
+    //重建这份数据的耗时(毫秒)
+    private long loadMillis;
+
+    //过期时间戳(毫秒)
+    private long expireAt;
+}
@@ -0,0 +1,221 @@
+package com.sky.cache;
+
+import com.sky.properties.CacheStampedeProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 缓存击穿保护
+ * 同一个key的并发重建合并为一次：本节点内的请求等待同一次查询的结果，
+ * redis模式下再用分布式锁保证集群内只有一个节点查询数据库，其他节点等待缓存写入；
+ * 另外提供概率提前刷新和后台刷新，让热点数据在过期前就被重建；
+ * 菜单快照就绪后C端读取不经过这里，它保护的是快照未就绪时落到菜品缓存和套餐缓存上的重建
+ */
+@Component
+@Slf4j
+public class StampedeGuard {
+
+    //只删除自己持有的锁
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
+    //等待其他节点重建时查询缓存的间隔(毫秒)
+    private static final long POLL_INTERVAL_MSEC = 50;
+
+    @Autowired
+    private CacheStampedeProperties cacheStampedeProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //本节点正在重建的key
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    //本节点正在后台刷新的key
+    private final Set<String> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private ThreadPoolExecutor refreshExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = cacheStampedeProperties.getRefreshThreads();
+        refreshExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdown();
+    }
+
+    /**
+     * 缓存未命中时重建，同一个key同时只有一个请求执行loader
+     * @param key 缓存key
+     * @param cacheReader 读取缓存，未命中返回null
+     * @param loader 查询数据库并写入缓存，返回写入的数据
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(String key, Supplier<T> cacheReader, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            //本节点已有请求在重建，等待其结果
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            T value = cacheReader.get();
+            if (value == null) {
+                value = isRedisLock() ? loadWithLock(key, cacheReader, loader) : loader.get();
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 按XFetch算法判断是否提前刷新：越接近过期、重建越慢，越可能提前刷新
+     * @param cachedValue
+     * @return
+     */
+    public boolean shouldRefreshEarly(CachedValue<?> cachedValue) {
+        double beta = cacheStampedeProperties.getEarlyRefreshBeta();
+        if (beta <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        long now = System.currentTimeMillis();
+        return now - cachedValue.getLoadMillis() * beta * Math.log(random) >= cachedValue.getExpireAt();
+    }
+
+    /**
+     * 缓存失效后是否先返回上一版本的数据
+     * @return
+     */
+    public boolean isStaleWhileRevalidate() {
+        return cacheStampedeProperties.isStaleWhileRevalidate();
+    }
+
+    /**
+     * 在后台刷新缓存，同一个key本节点同时只有一个刷新任务，redis模式下集群内同时只有一个；
+     * 线程池满或其他节点正在刷新时放弃本次刷新
+     * @param key
+     * @param loader
+     */
+    public void refreshAsync(String key, Runnable loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    if (isRedisLock()) {
+                        runIfLocked(key, loader);
+                    } else {
+                        loader.run();
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("后台刷新缓存失败：{}", key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private boolean isRedisLock() {
+        return "redis".equals(cacheStampedeProperties.getLockMode());
+    }
+
+    /**
+     * 拿到分布式锁时执行，否则说明其他节点正在重建，直接返回
+     */
+    private void runIfLocked(String key, Runnable loader) {
+        String lockKey = "lock:" + key;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, cacheStampedeProperties.getLockTimeoutMsec(), TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            loader.run();
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        }
+    }
+
+    /**
+     * 用分布式锁保证集群内只有一个节点重建，没拿到锁的节点等待缓存写入，超时后自行重建
+     */
+    private <T> T loadWithLock(String key, Supplier<T> cacheReader, Supplier<T> loader) {
+        String lockKey = "lock:" + key;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(lockKey, token, cacheStampedeProperties.getLockTimeoutMsec(), TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(locked)) {
+            try {
+                //拿到锁之前其他节点可能已经重建完成
+                T value = cacheReader.get();
+                return value != null ? value : loader.get();
+            } finally {
+                stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + cacheStampedeProperties.getWaitTimeoutMsec();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MSEC);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            T value = cacheReader.get();
+            if (value != null) {
+                return value;
+            }
+        }
+        log.warn("等待缓存重建超时，直接查询数据库：{}", key);
+        return loader.get();
+    }
+}
@@ -0,0 +1,182 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.sky.properties.LocalCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级缓存：本地Caffeine缓存在前，Redis缓存在后
+ * 读取时先查本地，未命中再查Redis并回填本地；失效时同时清除两级，并通知其他节点清除本地缓存
+ * C端套餐读取以菜单快照(CatalogService)为准，本缓存只在快照未就绪时承接按分类查询套餐的请求；
+ * 快照就绪后这里基本不再被读取，保留它是为了节点刚启动或快照构建失败时不把流量直接压到MySQL
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+
+    private final Cache redisCache;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    private final StampedeGuard stampedeGuard;
+
+    //本地缓存，key统一转为字符串，与失效通知中的key一致
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+
+    //本地缓存失效的次数，从Redis读取期间发生过失效时不回填本地
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter localEvictions;
+    private final Counter redisEvictions;
+
+    public TwoLevelCache(String name, Cache redisCache, TwoLevelCacheManager cacheManager, StampedeGuard stampedeGuard,
+                         LocalCacheProperties localCacheProperties, MeterRegistry meterRegistry) {
+        super(true);
+        this.name = name;
+        this.redisCache = redisCache;
+        this.cacheManager = cacheManager;
+        this.stampedeGuard = stampedeGuard;
+
+        localHits = meterRegistry.counter("sky.cache.gets", "cache", name, "tier", "local", "result", "hit");
+        localMisses = meterRegistry.counter("sky.cache.gets", "cache", name, "tier", "local", "result", "miss");
+        redisHits = meterRegistry.counter("sky.cache.gets", "cache", name, "tier", "redis", "result", "hit");
+        redisMisses = meterRegistry.counter("sky.cache.gets", "cache", name, "tier", "redis", "result", "miss");
+        localEvictions = meterRegistry.counter("sky.cache.evictions", "cache", name, "tier", "local");
+        redisEvictions = meterRegistry.counter("sky.cache.evictions", "cache", name, "tier", "redis");
+
+        localCache = Caffeine.newBuilder()
+                .maximumSize(localCacheProperties.getMaximumSize())
+                .expireAfterWrite(localCacheProperties.getExpireSeconds(), TimeUnit.SECONDS)
+                .removalListener((String key, Object value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        //容量或过期淘汰，主动失效单独计数
+                        localEvictions.increment();
+                    }
+                })
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return localCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = key.toString();
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        localMisses.increment();
+
+        long generation = invalidations.get();
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper == null) {
+            redisMisses.increment();
+            return null;
+        }
+        redisHits.increment();
+        Object storeValue = toStoreValue(wrapper.get());
+        putLocal(localKey, storeValue, generation);
+        return storeValue;
+    }
+
+    /**
+     * @Cacheable(sync = true)时调用，同一个key的并发重建由StampedeGuard合并为一次
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        long generation = invalidations.get();
+        wrapper = stampedeGuard.load(name + "::" + key, () -> redisCache.get(key), () -> {
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            redisCache.put(key, value);
+            return new SimpleValueWrapper(value);
+        });
+        putLocal(key.toString(), toStoreValue(wrapper.get()), generation);
+        return (T) wrapper.get();
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        localCache.put(key.toString(), toStoreValue(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        localCache.put(key.toString(), toStoreValue(existing == null ? value : existing.get()));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        redisEvictions.increment();
+        evictLocal(key.toString());
+        cacheManager.publishInvalidation(name, key.toString());
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        redisEvictions.increment();
+        clearLocal();
+        cacheManager.publishInvalidation(name, null);
+    }
+
+    /**
+     * 只清除本地缓存中的数据，收到其他节点的失效通知时调用
+     * @param key
+     */
+    void evictLocal(String key) {
+        invalidations.incrementAndGet();
+        localCache.invalidate(key);
+    }
+
+    /**
+     * 只清空本地缓存，收到其他节点的失效通知时调用
+     */
+    void clearLocal() {
+        invalidations.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    private void putLocal(String key, Object storeValue, long generation) {
+        localCache.put(key, storeValue);
+        if (invalidations.get() != generation) {
+            //从Redis读取期间发生了失效，读到的可能是旧数据，不保留在本地
+            localCache.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.LocalCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 两级缓存管理器
+ * 每个缓存由本地Caffeine缓存和RedisCacheManager中的同名缓存组成，
+ * 失效时通过Redis频道通知其他节点清除各自的本地缓存
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    //缓存失效通知使用的Redis频道
+    public static final String CHANNEL = "sky:cache:invalidate";
+
+    //当前节点标识
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final StampedeGuard stampedeGuard;
+
+    private final LocalCacheProperties localCacheProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate stringRedisTemplate,
+                                StampedeGuard stampedeGuard, LocalCacheProperties localCacheProperties,
+                                MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.stampedeGuard = stampedeGuard;
+        this.localCacheProperties = localCacheProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, key -> {
+            Cache redisCache = redisCacheManager.getCache(key);
+            return redisCache == null ? null
+                    : new TwoLevelCache(key, redisCache, this, stampedeGuard, localCacheProperties, meterRegistry);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 通知其他节点清除本地缓存
+     * @param cacheName
+     * @param key 为null时清空整个缓存
+     */
+    void publishInvalidation(String cacheName, String key) {
+        JSONObject message = new JSONObject();
+        message.put("node", NODE_ID);
+        message.put("cache", cacheName);
+        message.put("key", key);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message.toJSONString());
+        } catch (RuntimeException e) {
+            //其他节点的本地缓存最多在过期时间后与Redis一致
+            log.warn("发布缓存失效通知失败：{} {}", cacheName, key, e);
+        }
+    }
+
+    /**
+     * 收到其他节点的失效通知后清除本地缓存
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject body;
+        try {
+            body = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            log.warn("无法解析的缓存失效通知", e);
+            return;
+        }
+        if (NODE_ID.equals(body.getString("node"))) {
+            //本节点发出的通知，本地缓存已经清除
+            return;
+        }
+        TwoLevelCache cache = caches.get(body.getString("cache"));
+        if (cache == null) {
+            return;
+        }
+        String key = body.getString("key");
+        if (key == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(key);
+        }
+    }
+}
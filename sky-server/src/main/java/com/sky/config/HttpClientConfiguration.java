@@ -0,0 +1,100 @@
+package com.sky.config;
+
+import com.sky.properties.HttpClientProperties;
+import com.sky.utils.HttpClientUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配置类，用于创建共享的连接池Http客户端并注入HttpClientUtil
+ */
+@Configuration
+@Slf4j
+public class HttpClientConfiguration {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpClientConnectionManager(HttpClientProperties httpClientProperties,
+                                                                          MeterRegistry meterRegistry) {
+        Timer leaseTimer = meterRegistry.timer("sky.http.client.lease");
+        PoolingHttpClientConnectionManager connectionManager = new MeteredConnectionManager(leaseTimer);
+        connectionManager.setMaxTotal(httpClientProperties.getMaxTotal());
+        connectionManager.setDefaultMaxPerRoute(httpClientProperties.getMaxPerRoute());
+        connectionManager.setValidateAfterInactivity(httpClientProperties.getValidateAfterInactivityMsec());
+
+        Gauge.builder("sky.http.client.pool.leased", connectionManager, m -> m.getTotalStats().getLeased()).register(meterRegistry);
+        Gauge.builder("sky.http.client.pool.available", connectionManager, m -> m.getTotalStats().getAvailable()).register(meterRegistry);
+        Gauge.builder("sky.http.client.pool.pending", connectionManager, m -> m.getTotalStats().getPending()).register(meterRegistry);
+        Gauge.builder("sky.http.client.in.flight", HttpClientUtil::getInFlightRequests).register(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager httpClientConnectionManager,
+                                          HttpClientProperties httpClientProperties) {
+        log.info("开始创建连接池Http客户端: {}", httpClientProperties);
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(httpClientProperties.getConnectTimeout())
+                .setSocketTimeout(httpClientProperties.getSocketTimeout())
+                .setConnectionRequestTimeout(httpClientProperties.getConnectionRequestTimeout())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(httpClientConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                //后台线程定期回收过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(httpClientProperties.getIdleEvictSeconds(), TimeUnit.SECONDS)
+                .build();
+        HttpClientUtil.setHttpClient(httpClient);
+        return httpClient;
+    }
+
+    /**
+     * 记录从连接池获取连接等待时间的连接管理器
+     */
+    private static class MeteredConnectionManager extends PoolingHttpClientConnectionManager {
+
+        private final Timer leaseTimer;
+
+        MeteredConnectionManager(Timer leaseTimer) {
+            this.leaseTimer = leaseTimer;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            ConnectionRequest request = super.requestConnection(route, state);
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit timeUnit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout, timeUnit);
+                    } finally {
+                        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+}
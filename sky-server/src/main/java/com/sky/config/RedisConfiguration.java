@@ -1,10 +1,32 @@
 package com.sky.config;
 
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sky.cache.StampedeGuard;
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.LocalCacheProperties;
+import com.sky.properties.RedisSerializerProperties;
+import com.sky.serializer.CompressingRedisSerializer;
+import com.sky.websocket.WebSocketBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -17,15 +39,95 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
 @Slf4j
 public class RedisConfiguration {
 
+    /**
+     * redis value的序列化器：带类型信息的JSON，超过阈值时gzip压缩
+     * 时间类型按ISO格式完整保存，不使用JacksonObjectMapper中精确到分钟的接口格式
+     * @param redisSerializerProperties
+     * @return
+     */
     @Bean
-    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory){
+    public RedisSerializer<Object> redisValueSerializer(RedisSerializerProperties redisSerializerProperties){
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        //只允许反序列化项目自身的类型和常用的JDK类型
+        PolymorphicTypeValidator typeValidator = BasicPolymorphicTypeValidator.builder()
+                .allowIfSubType("com.sky.")
+                .allowIfSubType("java.util.")
+                .allowIfSubType("java.math.")
+                .allowIfSubType("java.time.")
+                .build();
+        objectMapper.activateDefaultTyping(typeValidator, ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+        GenericJackson2JsonRedisSerializer.registerNullValueSerializer(objectMapper, null);
+
+        return new CompressingRedisSerializer(new GenericJackson2JsonRedisSerializer(objectMapper),
+                redisSerializerProperties.getCompressThreshold());
+    }
+
+    @Bean
+    public RedisTemplate redisTemplate(RedisConnectionFactory redisConnectionFactory, RedisSerializer<Object> redisValueSerializer){
         log.info("开始创建redis模板对象...");
         RedisTemplate redisTemplate = new RedisTemplate();
         //设置redis连接工厂对象
         redisTemplate.setConnectionFactory(redisConnectionFactory);
         //设置redis key的序列号器
         redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setHashKeySerializer(new StringRedisSerializer());
+        //设置redis value的序列化器
+        redisTemplate.setValueSerializer(redisValueSerializer);
+        redisTemplate.setHashValueSerializer(redisValueSerializer);
         return redisTemplate;
     }
 
+    /**
+     * Spring Cache使用与redis模板相同的value序列化器
+     * @param redisValueSerializer
+     * @return
+     */
+    @Bean
+    public RedisCacheConfiguration redisCacheConfiguration(RedisSerializer<Object> redisValueSerializer){
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer));
+    }
+
+    /**
+     * 两级缓存管理器，本地缓存在前，Redis缓存在后
+     * @param redisConnectionFactory
+     * @param redisCacheConfiguration
+     * @param stringRedisTemplate
+     * @param stampedeGuard
+     * @param localCacheProperties
+     * @param meterRegistry
+     * @return
+     */
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                             RedisCacheConfiguration redisCacheConfiguration,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             StampedeGuard stampedeGuard,
+                                             LocalCacheProperties localCacheProperties,
+                                             MeterRegistry meterRegistry){
+        log.info("开始创建两级缓存管理器: {}", localCacheProperties);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(redisCacheConfiguration)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, stampedeGuard, localCacheProperties, meterRegistry);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       WebSocketBroadcaster webSocketBroadcaster,
+                                                                       TwoLevelCacheManager cacheManager){
+        log.info("开始创建redis消息监听容器...");
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        //订阅WebSocket集群广播频道
+        container.addMessageListener(webSocketBroadcaster, new ChannelTopic(WebSocketBroadcaster.CHANNEL));
+        //订阅缓存失效通知频道
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.CHANNEL));
+        return container;
+    }
+
 }
@@ -5,17 +5,20 @@ import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
+import com.sky.service.CatalogService;
+import com.sky.service.DishCacheService;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
  * @program: CqWorkspace
@@ -33,7 +36,10 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCacheService dishCacheService;
+
+    @Autowired
+    private CatalogService catalogService;
 
     /**
      * 新增菜品
@@ -47,8 +53,7 @@ public class DishController {
         dishService.saveWithFlavor(dishDTO);
 
         //清理缓存数据
-        String key = "dish_" + dishDTO.getCategoryId();
-        clearCache(key);
+        clearCache(Collections.singletonList(dishDTO.getCategoryId()));
         return Result.success();
     }
 
@@ -74,10 +79,11 @@ public class DishController {
     @ApiOperation("菜品批量删除")
     public Result delete(@RequestParam List<Long> ids){
         log.info("菜品批量删除 ： {}",ids);
+        List<Long> categoryIds = dishService.getCategoryIdsByIds(ids);
         dishService.deleteBatch(ids);
 
-        //将所有的菜品缓存数据清理掉，所有以dish_开头的key
-        clearCache("dish_*");
+        //清理被删除菜品所属分类的缓存数据
+        clearCache(categoryIds);
 
         return Result.success();
     }
@@ -104,10 +110,14 @@ public class DishController {
     @ApiOperation("修改菜品")
     public Result update(@RequestBody DishDTO dishDTO){
         log.info("修改菜品, {}",dishDTO);
+        List<Long> categoryIds = new ArrayList<>(dishService.getCategoryIdsByIds(Collections.singletonList(dishDTO.getId())));
         dishService.updateWithFlavor(dishDTO);
 
-        //将所有的菜品缓存数据清理掉，所有以dish_开头的key
-        clearCache("dish_*");
+        //清理修改前后所属分类的缓存数据
+        if (!categoryIds.contains(dishDTO.getCategoryId())) {
+            categoryIds.add(dishDTO.getCategoryId());
+        }
+        clearCache(categoryIds);
 
         return Result.success();
     }
@@ -124,8 +134,8 @@ public class DishController {
         log.info("启售禁售菜品: {},{}",status,id);
         dishService.startOrStop(status,id);
 
-        //将所有的菜品缓存数据清理掉，所有以dish_开头的key
-        clearCache("dish_*");
+        //清理菜品所属分类的缓存数据
+        clearCache(dishService.getCategoryIdsByIds(Collections.singletonList(id)));
 
         return Result.success();
     }
@@ -146,11 +156,15 @@ public class DishController {
 
     /**
      * 清理缓存数据
-     * @param pattern
+     * C端菜品列表以菜单快照为准，快照重建后立即生效；
+     * 菜品缓存只在快照未就绪时使用，同时失效，保证快照不可用时也不会读到旧数据
+     * @param categoryIds
      */
-    private void clearCache(String pattern){
-        Set keys = redisTemplate.keys(pattern);
-        redisTemplate.delete(keys);
+    private void clearCache(Collection<Long> categoryIds){
+        dishCacheService.evict(categoryIds);
+
+        //重建菜单快照
+        catalogService.refresh();
     }
 
 }
@@ -1,6 +1,7 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.vo.OrderReportVO;
 import com.sky.vo.SalesTop10ReportVO;
@@ -12,6 +13,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -34,6 +36,9 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
     /**
      * 营业额统计
      * @param begin
@@ -92,12 +97,46 @@ public class ReportController {
     }
 
     /**
-     * 导出运营数据报表
+     * 导出运营数据报表，未指定时间区间时导出近30天的数据
+     * @param begin
+     * @param end
      * @param response
      */
     @GetMapping("/export")
     @ApiOperation("导出运营数据报表")
-    public void export(HttpServletResponse response){
-        reportService.exportBusinessData(response);
+    public void export(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                       @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                       HttpServletResponse response){
+        if(begin == null || end == null){
+            reportService.exportBusinessData(response);
+            return;
+        }
+        reportService.exportBusinessData(begin, end, response);
+    }
+
+    /**
+     * 按订单表和用户表重建指定日期区间的营业数据汇总，用于修正增量维护丢失或出错的历史数据；
+     * 当天的数据实时统计，只重建到前一天
+     * @param begin
+     * @param end
+     * @return
+     */
+    @PostMapping("/rebuild")
+    @ApiOperation("重建营业数据汇总")
+    public Result<String> rebuild(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                                  @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end){
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (begin == null || end == null) {
+            return Result.error("请指定重建的日期区间");
+        }
+        if (end.isAfter(yesterday)) {
+            end = yesterday;
+        }
+        if (begin.isAfter(end)) {
+            return Result.error("只能重建已结束的日期");
+        }
+        log.info("重建营业数据汇总：{} 至 {}", begin, end);
+        businessStatsService.rebuild(begin, end);
+        return Result.success();
     }
 }
@@ -6,6 +6,7 @@ import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
+import com.sky.service.CatalogService;
 import com.sky.service.SetmealService;
 import com.sky.vo.SetmealVO;
 import io.swagger.annotations.Api;
@@ -32,6 +33,9 @@ public class SetmealController {
     @Autowired
     private SetmealService setmealService;
 
+    @Autowired
+    private CatalogService catalogService;
+
     /**
      * 新增套餐
      * @param setmealDTO
@@ -43,6 +47,7 @@ public class SetmealController {
     public Result saveWithSetmealDish(@RequestBody SetmealDTO setmealDTO){
         log.info("新增套餐 : {}",setmealDTO);
         setmealService.saveWithSetmealDish(setmealDTO);
+        catalogService.refresh();
         return Result.success();
     }
 
@@ -70,6 +75,7 @@ public class SetmealController {
     public Result delete(@RequestParam List<Long> ids){
         log.info("套餐批量删除 ： {}",ids);
         setmealService.deleteBatch(ids);
+        catalogService.refresh();
         return Result.success();
     }
 
@@ -92,6 +98,7 @@ public class SetmealController {
     public Result update(@RequestBody SetmealDTO setmealDTO){
         log.info("修改套餐, {}",setmealDTO);
         setmealService.updateWithSetmealDish(setmealDTO);
+        catalogService.refresh();
         return Result.success();
     }
 
@@ -107,6 +114,23 @@ public class SetmealController {
     public Result startOrStop(@PathVariable int status,Long id){
         log.info("启售禁售套餐: {},{}",status,id);
         setmealService.startOrStop(status,id);
+        catalogService.refresh();
+        return Result.success();
+    }
+
+    /**
+     * 批量启售禁售套餐
+     * @param status
+     * @param ids
+     * @return
+     */
+    @PostMapping("/status/{status}/batch")
+    @ApiOperation("批量启售禁售套餐")
+    @CacheEvict(cacheNames = "setmealCache",allEntries = true)
+    public Result startOrStopBatch(@PathVariable int status,@RequestParam List<Long> ids){
+        log.info("批量启售禁售套餐: {},{}",status,ids);
+        setmealService.startOrStopBatch(status,ids);
+        catalogService.refresh();
         return Result.success();
     }
 
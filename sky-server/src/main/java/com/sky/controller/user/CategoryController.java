@@ -2,6 +2,7 @@ package com.sky.controller.user;
 
 import com.sky.entity.Category;
 import com.sky.result.Result;
+import com.sky.service.CatalogService;
 import com.sky.service.CategoryService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -19,6 +20,9 @@ public class CategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private CatalogService catalogService;
+
     /**
      * 查询分类
      * @param type
@@ -27,6 +31,12 @@ public class CategoryController {
     @GetMapping("/list")
     @ApiOperation("查询分类")
     public Result<List<Category>> list(Integer type) {
+        //优先读取进程内的菜单快照
+        List<Category> snapshot = catalogService.listCategories(type);
+        if (snapshot != null) {
+            return Result.success(snapshot);
+        }
+
         List<Category> list = categoryService.list(type);
         return Result.success(list);
     }
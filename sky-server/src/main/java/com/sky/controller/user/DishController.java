@@ -3,13 +3,14 @@ package com.sky.controller.user;
 import com.sky.constant.StatusConstant;
 import com.sky.entity.Dish;
 import com.sky.result.Result;
+import com.sky.service.CatalogService;
+import com.sky.service.DishCacheService;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -24,7 +25,10 @@ public class DishController {
     private DishService dishService;
 
     @Autowired
-    private RedisTemplate redisTemplate;
+    private DishCacheService dishCacheService;
+
+    @Autowired
+    private CatalogService catalogService;
 
     /**
      * 根据分类id查询菜品
@@ -36,21 +40,18 @@ public class DishController {
     @ApiOperation("根据分类id查询菜品")
     public Result<List<DishVO>> list(Long categoryId) {
 
-        //查询redis中是否存在菜品数据
-        String key = "dish_" + categoryId;
-        List<DishVO> list = (List<DishVO>) redisTemplate.opsForValue().get(key);
-        if (list != null && list.size() > 0){
-            //如果存在，直接返回，不用查询数据库
-            return Result.success(list);
+        //优先读取进程内的菜单快照
+        List<DishVO> snapshot = catalogService.listDishes(categoryId);
+        if (snapshot != null) {
+            return Result.success(snapshot);
         }
 
+        //快照未就绪时，查询redis中的菜品数据，不存在时查询数据库并放入redis中
         Dish dish = new Dish();
         dish.setCategoryId(categoryId);
         dish.setStatus(StatusConstant.ENABLE);//查询起售中的菜品
 
-        //如果不存在，查询数据库，将查询到的数据放入redis中
-        list = dishService.listWithFlavor(dish);
-        redisTemplate.opsForValue().set(key,list);
+        List<DishVO> list = dishCacheService.get(categoryId, () -> dishService.listWithFlavor(dish));
 
         return Result.success(list);
     }
@@ -1,8 +1,10 @@
 package com.sky.controller.user;
 
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.dto.OrdersPaymentDTO;
 import com.sky.dto.OrdersSubmitDTO;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.result.Result;
 import com.sky.service.OrderService;
@@ -70,6 +72,18 @@ public class OrderController {
         return Result.success(pageResult);
     }
 
+    /**
+     * 历史订单游标分页查询
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    @GetMapping("/historyOrders/cursor")
+    @ApiOperation("历史订单游标分页查询")
+    public Result<CursorPageResult> cursorPageQuery(OrdersCursorQueryDTO ordersCursorQueryDTO){
+        CursorPageResult cursorPageResult = orderService.cursorPageQuery(ordersCursorQueryDTO);
+        return Result.success(cursorPageResult);
+    }
+
     /**
      * 查询订单详情
      * @param id
@@ -1,14 +1,13 @@
 package com.sky.controller.user;
 
-import com.sky.constant.StatusConstant;
 import com.sky.entity.Setmeal;
 import com.sky.result.Result;
+import com.sky.service.CatalogService;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,6 +21,9 @@ public class SetmealController {
     @Autowired
     private SetmealService setmealService;
 
+    @Autowired
+    private CatalogService catalogService;
+
     /**
      * 条件查询
      *
@@ -30,13 +32,15 @@ public class SetmealController {
      */
     @GetMapping("/list")
     @ApiOperation("根据分类id查询套餐")
-    @Cacheable(cacheNames = "setmealCache",key = "#categoryId")
     public Result<List<Setmeal>> list(Long categoryId) {
-        Setmeal setmeal = new Setmeal();
-        setmeal.setCategoryId(categoryId);
-        setmeal.setStatus(StatusConstant.ENABLE);
+        //优先读取进程内的菜单快照
+        List<Setmeal> snapshot = catalogService.listSetmeals(categoryId);
+        if (snapshot != null) {
+            return Result.success(snapshot);
+        }
 
-        List<Setmeal> list = setmealService.list(setmeal);
+        //快照未就绪时走套餐缓存
+        List<Setmeal> list = setmealService.listEnabledByCategoryId(categoryId);
         return Result.success(list);
     }
 
@@ -49,6 +53,12 @@ public class SetmealController {
     @GetMapping("/dish/{id}")
     @ApiOperation("根据套餐id查询包含的菜品列表")
     public Result<List<DishItemVO>> dishList(@PathVariable("id") Long id) {
+        //起售中的套餐直接读取菜单快照
+        List<DishItemVO> snapshot = catalogService.listDishItems(id);
+        if (snapshot != null) {
+            return Result.success(snapshot);
+        }
+
         List<DishItemVO> list = setmealService.getDishItemById(id);
         return Result.success(list);
     }
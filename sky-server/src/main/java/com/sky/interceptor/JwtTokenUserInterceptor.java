@@ -3,14 +3,13 @@ package com.sky.interceptor;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
-import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -24,6 +23,13 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
     @Autowired
     private JwtProperties jwtProperties;
 
+    private JwtTokenVerifier jwtTokenVerifier;
+
+    @PostConstruct
+    public void init() {
+        jwtTokenVerifier = new JwtTokenVerifier(jwtProperties.getUserSecretKey(), JwtClaimsConstant.USER_ID, jwtProperties);
+    }
+
     /**
      * 校验jwt
      *
@@ -44,18 +50,15 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
         String token = request.getHeader(jwtProperties.getUserTokenName());
 
         //2、校验令牌
-        try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
-            Long userId = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
-            log.info("当前用户id：", userId);
-            BaseContext.setCurrentId(userId);
-            //3、通过，放行
-            return true;
-        } catch (Exception ex) {
-            //4、不通过，响应401状态码
+        Long userId = jwtTokenVerifier.verify(token);
+        if (userId == null) {
+            //3、不通过，响应401状态码
             response.setStatus(401);
             return false;
         }
+        log.debug("当前用户id：{}", userId);
+        BaseContext.setCurrentId(userId);
+        //4、通过，放行
+        return true;
     }
 }
@@ -0,0 +1,113 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jwt令牌校验及缓存
+ * 校验通过的令牌按令牌摘要缓存解析出的id和过期时间，校验失败的令牌也短暂缓存，
+ * 同一个令牌的后续请求只需一次摘要计算和一次缓存查找；秘钥在创建时转换为字节数组
+ */
+public class JwtTokenVerifier {
+
+    private final byte[] secretKey;
+
+    private final String idClaim;
+
+    //令牌摘要 -> 校验通过的令牌
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
+    //令牌摘要 -> 校验失败
+    private final Cache<String, Boolean> invalidTokens;
+
+    public JwtTokenVerifier(String secretKey, String idClaim, JwtProperties jwtProperties) {
+        this.secretKey = secretKey.getBytes(StandardCharsets.UTF_8);
+        this.idClaim = idClaim;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getTokenCacheSize())
+                .expireAfterWrite(jwtProperties.getTokenCacheSeconds(), TimeUnit.SECONDS)
+                .build();
+        this.invalidTokens = Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getTokenCacheSize())
+                .expireAfterWrite(jwtProperties.getInvalidTokenCacheSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 校验令牌并返回其中的id，令牌无效或已过期时返回null
+     * @param token
+     * @return
+     */
+    public Long verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String digest = digest(token);
+
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified != null) {
+            if (verified.expireAt > System.currentTimeMillis()) {
+                return verified.id;
+            }
+            //令牌已过期
+            verifiedTokens.invalidate(digest);
+            invalidTokens.put(digest, Boolean.TRUE);
+            return null;
+        }
+        if (invalidTokens.getIfPresent(digest) != null) {
+            return null;
+        }
+
+        try {
+            Claims claims = JwtUtil.parseJWT(secretKey, token);
+            Object idValue = claims.get(idClaim);
+            if (idValue == null) {
+                //签名正确但缺少id
+                invalidTokens.put(digest, Boolean.TRUE);
+                return null;
+            }
+            Long id = Long.valueOf(idValue.toString());
+            Date expiration = claims.getExpiration();
+            long expireAt = expiration == null ? Long.MAX_VALUE : expiration.getTime();
+            verifiedTokens.put(digest, new VerifiedToken(id, expireAt));
+            return id;
+        } catch (JwtException | IllegalArgumentException e) {
+            //签名错误、格式错误、已过期，或id不是数字
+            invalidTokens.put(digest, Boolean.TRUE);
+            return null;
+        }
+    }
+
+    /**
+     * 令牌的SHA-256摘要，缓存中不保存令牌原文
+     */
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class VerifiedToken {
+        private final Long id;
+        private final long expireAt;
+
+        VerifiedToken(Long id, long expireAt) {
+            this.id = id;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+@Repository
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 累加指定日期的汇总数据，当天记录不存在时插入
+     * @param delta
+     */
+    void insertOrIncrement(DailyBusinessStats delta);
+
+    /**
+     * 累加指定日期的汇总数据，记录不存在时不做处理(等待按订单表重建)
+     * @param delta
+     */
+    void increment(DailyBusinessStats delta);
+
+    /**
+     * 批量写入汇总数据，已存在的日期直接覆盖
+     * @param statsList
+     */
+    void insertOrReplaceBatch(@Param("statsList") List<DailyBusinessStats> statsList);
+
+    /**
+     * 查询指定日期区间的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> getByDateRange(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+}
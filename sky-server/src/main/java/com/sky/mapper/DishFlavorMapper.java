@@ -3,9 +3,11 @@ package com.sky.mapper;
 import com.sky.entity.DishFlavor;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -25,6 +27,12 @@ public interface DishFlavorMapper {
     @Delete("delete from dish_flavor where dish_id = #{dishId}")
     void deleteById(Long dishId);
 
+    /**
+     * 根据菜品id批量删除口味信息
+     * @param dishIds
+     */
+    void deleteByDishIds(List<Long> dishIds);
+
     /**
      * 根据菜品Id查询对应的口味数据
      * @param dishId
@@ -32,4 +40,19 @@ public interface DishFlavorMapper {
      */
     @Select("select * from dish_flavor where dish_id = #{dishId}")
     List<DishFlavor> getById(Long dishId);
+
+    /**
+     * 根据菜品id批量查询对应的口味数据
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(@Param("dishIds") Collection<Long> dishIds);
+
+    /**
+     * 根据菜品状态查询对应的口味数据
+     * @param status
+     * @return
+     */
+    @Select("select df.* from dish_flavor df join dish d on df.dish_id = d.id where d.status = #{status}")
+    List<DishFlavor> getByDishStatus(Integer status);
 }
@@ -55,6 +55,19 @@ public interface DishMapper {
     @Delete("delete from dish where id = #{id}")
     void deleteById(Long id);
 
+    /**
+     * 根据主键批量查询菜品
+     * @param ids
+     * @return
+     */
+    List<Dish> getByIds(List<Long> ids);
+
+    /**
+     * 根据主键批量删除菜品
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
     /**
      * 根据Id动态修改菜品数据
      * @param dish
@@ -73,6 +86,20 @@ public interface DishMapper {
     @Select("select * from dish where category_id = #{categoryId} and status = #{status}")
     List<Dish> list(Dish dish);
 
+    /**
+     * 查询全部菜品
+     * @return
+     */
+    @Select("select * from dish")
+    List<Dish> listAll();
+
+    /**
+     * 根据菜品id查询所属的分类id
+     * @param ids
+     * @return
+     */
+    List<Long> getCategoryIdsByIds(List<Long> ids);
+
     /**
      * 根据条件统计菜品数量
      * @param map
@@ -1,13 +1,16 @@
 package com.sky.mapper;
 
 import com.github.pagehelper.Page;
+import com.sky.dto.DailyOrderStatDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.OrdersCursorQueryDTO;
 import com.sky.dto.OrdersPageQueryDTO;
 import com.sky.entity.Orders;
 import com.sky.vo.OrderVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -46,6 +49,20 @@ public interface OrderMapper {
      */
     Page<OrderVO> pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 订单游标分页查询
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    List<OrderVO> cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
+    /**
+     * 统计游标分页查询条件下的订单总数
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    Long countCursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
     /**
      * 根据id获得订单数据
      * @param id
@@ -62,8 +79,36 @@ public interface OrderMapper {
     @Select("select count(id) from orders where status = #{status}")
     Integer countStatus(Integer toBeConfirmed);
 
-    @Select("select * from orders where status = #{status} and order_time < #{orderTime}")
-    List<Orders> getByStatusAndOrderTimeLT(int status, LocalDateTime orderTime);
+    /**
+     * 修改一批指定状态且下单时间早于orderTime的订单状态，按(status, order_time, id)索引顺序取前limit条
+     * @param orders 新的状态，取消原因和取消时间不为空时一并修改
+     * @param fromStatus
+     * @param orderTime
+     * @param limit
+     * @return 修改的行数
+     */
+    int updateStatusByStatusAndOrderTimeLT(@Param("orders") Orders orders,
+                                           @Param("fromStatus") Integer fromStatus,
+                                           @Param("orderTime") LocalDateTime orderTime,
+                                           @Param("limit") int limit);
+
+    /**
+     * 订单仍处于fromStatus时才修改，用于可能与其他操作并发的状态流转
+     * @param orders
+     * @param fromStatus
+     * @return 修改的行数，0表示订单状态已被修改
+     */
+    int updateByIdAndStatus(@Param("orders") Orders orders, @Param("fromStatus") Integer fromStatus);
+
+    /**
+     * 查询指定状态且下单时间早于orderTime的订单中最早的下单时间
+     * @param status
+     * @param orderTime
+     * @return
+     */
+    @Select("select min(order_time) from orders where status = #{status} and order_time < #{orderTime}")
+    LocalDateTime getMinOrderTimeByStatusAndOrderTimeLT(@Param("status") Integer status,
+                                                        @Param("orderTime") LocalDateTime orderTime);
 
     /**
      * 根据动态条件统计营业额数据
@@ -86,4 +131,20 @@ public interface OrderMapper {
      * @return
      */
     List<GoodsSalesDTO> getSalesTop10(@Param("begin") LocalDateTime begin,@Param("end") LocalDateTime end);
+
+    /**
+     * 按天分组统计指定时间区间的订单总数、有效订单数和营业额
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyOrderStatDTO> sumGroupByDate(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
+
+    /**
+     * 按下单时间流式读取指定时间区间的订单，逐行交给handler处理，不在内存中保留整个结果集
+     * @param begin
+     * @param end
+     * @param handler
+     */
+    void streamByOrderTime(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end, ResultHandler<Orders> handler);
 }
@@ -34,6 +34,12 @@ public interface SetmealDishMapper {
     @Delete("delete from setmeal_dish where setmeal_id = #{setmealId}")
     void deleteById(Long setmealId);
 
+    /**
+     * 根据套餐id批量删除套餐菜品关系表数据
+     * @param setmealIds
+     */
+    void deleteBySetmealIds(List<Long> setmealIds);
+
     /**
      * 根据setmealId查询套餐菜品关系表数据
      * @param setmealId
@@ -41,4 +47,28 @@ public interface SetmealDishMapper {
      */
     @Select("select * from setmeal_dish where setmeal_id = #{setmealId}")
     List<SetmealDish> getBySetmealId(Long setmealId);
+
+    /**
+     * 统计套餐中停售菜品的数量
+     * @param setmealId
+     * @return
+     */
+    @Select("select count(*) from setmeal_dish sd join dish d on sd.dish_id = d.id " +
+            "where sd.setmeal_id = #{setmealId} and d.status = 0")
+    Integer countDisabledDishes(Long setmealId);
+
+    /**
+     * 查询包含停售菜品的套餐id
+     * @param setmealIds
+     * @return
+     */
+    List<Long> getSetmealIdsWithDisabledDishes(List<Long> setmealIds);
+
+    /**
+     * 根据套餐状态查询套餐菜品关系表数据
+     * @param status
+     * @return
+     */
+    @Select("select sd.* from setmeal_dish sd join setmeal s on sd.setmeal_id = s.id where s.status = #{status}")
+    List<SetmealDish> getBySetmealStatus(Integer status);
 }
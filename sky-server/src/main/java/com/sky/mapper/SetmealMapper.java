@@ -9,6 +9,7 @@ import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.springframework.stereotype.Repository;
 
@@ -63,6 +64,27 @@ public interface SetmealMapper {
     @Delete("delete from setmeal where id = #{id}")
     void deleteById(Long id);
 
+    /**
+     * 根据主键批量查询套餐
+     * @param ids
+     * @return
+     */
+    List<Setmeal> getByIds(List<Long> ids);
+
+    /**
+     * 根据主键批量删除套餐
+     * @param ids
+     */
+    void deleteByIds(List<Long> ids);
+
+    /**
+     * 批量修改套餐的售卖状态
+     * @param setmeal 提供状态和修改人、修改时间
+     * @param ids
+     */
+    @AutoFill(OperationType.UPDATE)
+    void updateStatusByIds(@Param("setmeal") Setmeal setmeal, @Param("ids") List<Long> ids);
+
     /**
      * 动态条件查询套餐
      * @param setmeal
@@ -4,6 +4,7 @@ import com.sky.entity.ShoppingCart;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 import org.springframework.stereotype.Repository;
 
@@ -42,6 +43,20 @@ public interface ShoppingCartMapper {
     @Delete("delete from shopping_cart where user_id = #{userId}")
     void deleteByUserId(Long userId);
 
+    /**
+     * 按购物车数据id批量扣除数量
+     * @param userId
+     * @param shoppingCartList
+     */
+    void subNumberBatch(@Param("userId") Long userId, @Param("shoppingCartList") List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 删除指定用户数量已扣到0的购物车数据
+     * @param userId
+     */
+    @Delete("delete from shopping_cart where user_id = #{userId} and number <= 0")
+    void deleteEmptyByUserId(Long userId);
+
     /**
      * 动态删除
      * @param shoppingCart
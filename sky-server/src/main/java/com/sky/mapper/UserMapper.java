@@ -1,10 +1,14 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -39,4 +43,12 @@ public interface UserMapper {
      * @return
      */
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计指定时间区间的新增用户数量
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyUserStatDTO> countGroupByDate(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
 }
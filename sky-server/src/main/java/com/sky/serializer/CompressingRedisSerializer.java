@@ -0,0 +1,74 @@
+package com.sky.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 带压缩的Redis值序列化器
+ * 由delegate序列化后超过阈值的数据进行gzip压缩，读取时按gzip头识别是否需要解压；
+ * 以JDK序列化头开头的旧数据不反序列化(JDK反序列化不受类型白名单限制)，按缓存未命中处理，由调用方重新加载后覆盖
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+
+    private final int compressThreshold;
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, int compressThreshold) {
+        this.delegate = delegate;
+        this.compressThreshold = compressThreshold;
+    }
+
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null || compressThreshold <= 0 || bytes.length <= compressThreshold) {
+            return bytes;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new SerializationException("Could not compress value", e);
+        }
+        return out.toByteArray();
+    }
+
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (startsWith(bytes, (byte) 0x1f, (byte) 0x8b)) {
+            //gzip压缩的数据
+            return delegate.deserialize(decompress(bytes));
+        }
+        if (startsWith(bytes, (byte) 0xac, (byte) 0xed)) {
+            //升级前JDK序列化的数据，视为未命中
+            return null;
+        }
+        return delegate.deserialize(bytes);
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = gzip.read(buffer)) > 0) {
+                out.write(buffer, 0, len);
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Could not decompress value", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean startsWith(byte[] bytes, byte first, byte second) {
+        return bytes.length >= 2 && bytes[0] == first && bytes[1] == second;
+    }
+}
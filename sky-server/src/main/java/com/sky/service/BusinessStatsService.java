@@ -0,0 +1,61 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatsService {
+
+    /**
+     * 记录新提交的订单
+     * @param orders
+     */
+    void recordOrderSubmitted(Orders orders);
+
+    /**
+     * 记录订单状态变更，只有进入或离开"已完成"状态时才影响汇总数据
+     * @param ordersDB 变更前的订单数据
+     * @param newStatus 变更后的订单状态
+     */
+    void recordOrderStatusChange(Orders ordersDB, Integer newStatus);
+
+    /**
+     * 批量记录订单状态变更，按下单日期合并后每天只累加一次
+     * @param ordersDBList 变更前的订单数据，至少包含状态、下单时间和金额
+     * @param newStatus 变更后的订单状态
+     */
+    void recordOrderStatusChanges(List<Orders> ordersDBList, Integer newStatus);
+
+    /**
+     * 记录新注册的用户
+     * @param user
+     */
+    void recordUserRegistered(User user);
+
+    /**
+     * 查询已结束日期区间的汇总数据，缺失的日期会先按订单表和用户表重建
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> listClosedDays(LocalDate begin, LocalDate end);
+
+    /**
+     * 按订单表和用户表重建指定日期区间的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询指定日期区间每天的汇总数据，已结束的日期读取汇总表，当天实时统计
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> listDaily(LocalDate begin, LocalDate end);
+}
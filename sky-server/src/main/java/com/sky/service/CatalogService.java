@@ -0,0 +1,53 @@
+package com.sky.service;
+
+import com.sky.entity.Category;
+import com.sky.entity.Setmeal;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+
+import java.util.List;
+
+/**
+ * C端菜单数据的进程内快照
+ * 快照未就绪时各查询方法返回null，由调用方回退到原有的查询方式
+ */
+public interface CatalogService {
+
+    /**
+     * 根据类型查询启用的分类
+     * @param type
+     * @return
+     */
+    List<Category> listCategories(Integer type);
+
+    /**
+     * 根据分类id查询起售中的菜品及口味
+     * @param categoryId
+     * @return
+     */
+    List<DishVO> listDishes(Long categoryId);
+
+    /**
+     * 根据分类id查询起售中的套餐
+     * @param categoryId
+     * @return
+     */
+    List<Setmeal> listSetmeals(Long categoryId);
+
+    /**
+     * 根据套餐id查询起售中套餐的菜品选项
+     * @param setmealId
+     * @return
+     */
+    List<DishItemVO> listDishItems(Long setmealId);
+
+    /**
+     * 菜单数据发生变更后调用，递增全局版本号并重建本节点的快照
+     */
+    void refresh();
+
+    /**
+     * 全局版本号比本节点快照新时重建快照，供定时任务同步其他节点的变更
+     */
+    void syncVersion();
+}
@@ -0,0 +1,23 @@
+package com.sky.service;
+
+import com.sky.entity.AddressBook;
+
+public interface DeliveryRangeService {
+
+    /**
+     * 检查收货地址是否超出配送范围，超出或无法解析时抛出业务异常
+     * @param addressBook
+     */
+    void checkOutOfRange(AddressBook addressBook);
+
+    /**
+     * 收货地址修改或删除后清除其坐标缓存
+     * @param addressBookId
+     */
+    void evictAddress(Long addressBookId);
+
+    /**
+     * 重新解析店铺坐标
+     */
+    void refreshShopCoordinate();
+}
@@ -0,0 +1,27 @@
+package com.sky.service;
+
+import com.sky.vo.DishVO;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * C端菜品列表的Redis缓存
+ */
+public interface DishCacheService {
+
+    /**
+     * 查询分类下的菜品缓存，未命中时调用loader查询数据库并写入缓存
+     * @param categoryId
+     * @param loader
+     * @return
+     */
+    List<DishVO> get(Long categoryId, Supplier<List<DishVO>> loader);
+
+    /**
+     * 使指定分类的菜品缓存失效
+     * @param categoryIds
+     */
+    void evict(Collection<Long> categoryIds);
+}
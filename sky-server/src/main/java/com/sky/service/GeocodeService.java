@@ -0,0 +1,24 @@
+package com.sky.service;
+
+import com.sky.dto.CoordinateDTO;
+
+/**
+ * 地理编码和路线规划，默认实现调用百度地图接口，测试时可注册@Primary的本地实现替换
+ */
+public interface GeocodeService {
+
+    /**
+     * 解析地址的经纬度坐标
+     * @param address
+     * @return 解析失败时返回null
+     */
+    CoordinateDTO geocode(String address);
+
+    /**
+     * 计算两个坐标之间的驾车距离
+     * @param origin
+     * @param destination
+     * @return 距离(米)，规划失败时返回null
+     */
+    Integer drivingDistance(CoordinateDTO origin, CoordinateDTO destination);
+}
@@ -0,0 +1,27 @@
+package com.sky.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * 待支付订单的超时取消
+ */
+public interface OrderExpiryService {
+
+    /**
+     * 登记新下单的订单，超过支付时限仍未支付时自动取消
+     * @param orderId
+     * @param orderTime
+     */
+    void schedule(Long orderId, LocalDateTime orderTime);
+
+    /**
+     * 订单已支付或已取消，不再需要超时取消
+     * @param orderId
+     */
+    void unschedule(Long orderId);
+
+    /**
+     * 取消所有已到期的订单，包括其他节点登记的订单
+     */
+    void expireDue();
+}
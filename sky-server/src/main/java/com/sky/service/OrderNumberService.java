@@ -0,0 +1,13 @@
+package com.sky.service;
+
+/**
+ * 订单号生成
+ */
+public interface OrderNumberService {
+
+    /**
+     * 生成新的订单号，集群内唯一且大致按时间递增
+     * @return
+     */
+    String nextNumber();
+}
@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.dto.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
@@ -36,6 +37,13 @@ public interface OrderService {
      */
     PageResult pageQuery(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 历史订单游标分页查询
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    CursorPageResult cursorPageQuery(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
     /**
      * 查询订单详情
      * @param id
@@ -61,6 +69,13 @@ public interface OrderService {
      */
     PageResult conditionSearch(OrdersPageQueryDTO ordersPageQueryDTO);
 
+    /**
+     * 根据条件游标分页查询订单数据
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    CursorPageResult cursorConditionSearch(OrdersCursorQueryDTO ordersCursorQueryDTO);
+
     /**
      * 各个状态的订单数量统计
      * @return
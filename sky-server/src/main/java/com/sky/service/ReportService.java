@@ -47,4 +47,12 @@ public interface ReportService {
      * @param response
      **/
     void exportBusinessData(HttpServletResponse response);
+
+    /**
+     * 导出指定时间区间的运营数据报表
+     * @param begin
+     * @param end
+     * @param response
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response);
 }
@@ -51,6 +51,13 @@ public interface SetmealService {
      */
     void startOrStop(int status, Long id);
 
+    /**
+     * 批量启售禁售套餐
+     * @param status
+     * @param ids
+     */
+    void startOrStopBatch(int status, List<Long> ids);
+
     /**
      * 条件查询
      * @param setmeal
@@ -58,6 +65,13 @@ public interface SetmealService {
      */
     List<Setmeal> list(Setmeal setmeal);
 
+    /**
+     * 根据分类id查询起售中的套餐，结果缓存在setmealCache中
+     * @param categoryId
+     * @return
+     */
+    List<Setmeal> listEnabledByCategoryId(Long categoryId);
+
     /**
      * 根据id查询菜品选项
      * @param id
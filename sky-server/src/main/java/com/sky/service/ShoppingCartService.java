@@ -29,4 +29,30 @@ public interface ShoppingCartService {
      * @param shoppingCartDTO
      */
     void subShoppingCart(ShoppingCartDTO shoppingCartDTO);
+
+    /**
+     * 查询指定用户的购物车数据
+     * @param userId
+     * @return
+     */
+    List<ShoppingCart> listByUserId(Long userId);
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    void cleanByUserId(Long userId);
+
+    /**
+     * 从指定用户的购物车中扣除已下单的商品数量，下单期间新加入的商品和数量保留
+     * @param userId
+     * @param orderedList 下单时读取的购物车数据
+     */
+    void cleanOrdered(Long userId, List<ShoppingCart> orderedList);
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    void addBatch(List<ShoppingCart> shoppingCartList);
 }
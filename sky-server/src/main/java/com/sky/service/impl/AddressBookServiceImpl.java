@@ -4,6 +4,7 @@ import com.sky.context.BaseContext;
 import com.sky.entity.AddressBook;
 import com.sky.mapper.AddressBookMapper;
 import com.sky.service.AddressBookService;
+import com.sky.service.DeliveryRangeService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -15,6 +16,8 @@ import java.util.List;
 public class AddressBookServiceImpl implements AddressBookService {
     @Autowired
     private AddressBookMapper addressBookMapper;
+    @Autowired
+    private DeliveryRangeService deliveryRangeService;
 
     /**
      * 条件查询
@@ -55,6 +58,8 @@ public class AddressBookServiceImpl implements AddressBookService {
      */
     public void update(AddressBook addressBook) {
         addressBookMapper.update(addressBook);
+        //地址可能已变化，清除坐标缓存
+        deliveryRangeService.evictAddress(addressBook.getId());
     }
 
     /**
@@ -81,6 +86,7 @@ public class AddressBookServiceImpl implements AddressBookService {
      */
     public void deleteById(Long id) {
         addressBookMapper.deleteById(id);
+        deliveryRangeService.evictAddress(id);
     }
 
 }
@@ -0,0 +1,76 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.dto.CoordinateDTO;
+import com.sky.service.GeocodeService;
+import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 基于百度地图接口的地理编码和路线规划
+ */
+@Service
+@Slf4j
+public class BaiduGeocodeServiceImpl implements GeocodeService {
+
+    //地理编码接口地址
+    public static final String GEOCODING_URL = "https://api.map.baidu.com/geocoding/v3";
+    //驾车路线规划接口地址
+    public static final String DRIVING_URL = "https://api.map.baidu.com/directionlite/v1/driving";
+
+    @Value("${sky.baidu.ak}")
+    private String ak;
+
+    /**
+     * 解析地址的经纬度坐标
+     * @param address
+     * @return
+     */
+    public CoordinateDTO geocode(String address) {
+        Map<String, String> map = new HashMap<>();
+        map.put("address", address);
+        map.put("output", "json");
+        map.put("ak", ak);
+
+        JSONObject jsonObject = JSON.parseObject(HttpClientUtil.doGet(GEOCODING_URL, map));
+        if (jsonObject == null || !"0".equals(jsonObject.getString("status"))) {
+            log.warn("地址解析失败：{}", address);
+            return null;
+        }
+
+        //数据解析
+        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
+        return new CoordinateDTO(location.getString("lat"), location.getString("lng"));
+    }
+
+    /**
+     * 计算两个坐标之间的驾车距离
+     * @param origin
+     * @param destination
+     * @return
+     */
+    public Integer drivingDistance(CoordinateDTO origin, CoordinateDTO destination) {
+        Map<String, String> map = new HashMap<>();
+        map.put("origin", origin.toLatLng());
+        map.put("destination", destination.toLatLng());
+        map.put("steps_info", "0");
+        map.put("ak", ak);
+
+        JSONObject jsonObject = JSON.parseObject(HttpClientUtil.doGet(DRIVING_URL, map));
+        if (jsonObject == null || !"0".equals(jsonObject.getString("status"))) {
+            log.warn("配送路线规划失败：{} -> {}", origin.toLatLng(), destination.toLatLng());
+            return null;
+        }
+
+        //数据解析
+        JSONArray routes = jsonObject.getJSONObject("result").getJSONArray("routes");
+        return routes.getJSONObject(0).getInteger("distance");
+    }
+}
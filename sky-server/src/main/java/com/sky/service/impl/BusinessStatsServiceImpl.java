@@ -0,0 +1,249 @@
+package com.sky.service.impl;
+
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 每日营业数据汇总，订单状态流转和用户注册时增量维护
+ */
+@Service
+@Slf4j
+public class BusinessStatsServiceImpl implements BusinessStatsService {
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    /**
+     * 记录新提交的订单
+     * @param orders
+     */
+    public void recordOrderSubmitted(Orders orders) {
+        DailyBusinessStats delta = emptyStats(orders.getOrderTime().toLocalDate());
+        delta.setOrderCount(1);
+        increment(delta);
+    }
+
+    /**
+     * 记录订单状态变更
+     * @param ordersDB 变更前的订单数据
+     * @param newStatus 变更后的订单状态
+     */
+    public void recordOrderStatusChange(Orders ordersDB, Integer newStatus) {
+        recordOrderStatusChanges(Collections.singletonList(ordersDB), newStatus);
+    }
+
+    /**
+     * 批量记录订单状态变更，按下单日期合并后每天只累加一次
+     * @param ordersDBList 变更前的订单数据
+     * @param newStatus 变更后的订单状态
+     */
+    public void recordOrderStatusChanges(List<Orders> ordersDBList, Integer newStatus) {
+        boolean isCompleted = Orders.COMPLETED.equals(newStatus);
+        Map<LocalDate, DailyBusinessStats> deltaMap = new TreeMap<>();
+        for (Orders ordersDB : ordersDBList) {
+            boolean wasCompleted = Orders.COMPLETED.equals(ordersDB.getStatus());
+            if (wasCompleted == isCompleted) {
+                //订单总数按下单计入，其它状态之间的流转不影响汇总数据
+                continue;
+            }
+
+            int sign = isCompleted ? 1 : -1;
+            BigDecimal amount = ordersDB.getAmount() == null ? BigDecimal.ZERO : ordersDB.getAmount();
+
+            DailyBusinessStats delta = deltaMap.computeIfAbsent(ordersDB.getOrderTime().toLocalDate(), this::emptyStats);
+            delta.setValidOrderCount(delta.getValidOrderCount() + sign);
+            delta.setTurnover(sign > 0 ? delta.getTurnover().add(amount) : delta.getTurnover().subtract(amount));
+        }
+        deltaMap.values().forEach(this::increment);
+    }
+
+    /**
+     * 记录新注册的用户
+     * @param user
+     */
+    public void recordUserRegistered(User user) {
+        DailyBusinessStats delta = emptyStats(user.getCreateTime().toLocalDate());
+        delta.setNewUsers(1);
+        increment(delta);
+    }
+
+    /**
+     * 查询已结束日期区间的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> listClosedDays(LocalDate begin, LocalDate end) {
+        List<DailyBusinessStats> statsList = dailyBusinessStatsMapper.getByDateRange(begin, end);
+
+        long days = end.toEpochDay() - begin.toEpochDay() + 1;
+        if (statsList.size() >= days) {
+            return statsList;
+        }
+
+        //部分日期尚未汇总(如上线前的历史数据)，按订单表重建缺失的日期
+        Map<LocalDate, DailyBusinessStats> statsMap = statsList.stream()
+                .collect(Collectors.toMap(DailyBusinessStats::getStatDate, Function.identity()));
+        LocalDate missingBegin = begin;
+        while (statsMap.containsKey(missingBegin)) {
+            missingBegin = missingBegin.plusDays(1);
+        }
+        LocalDate missingEnd = end;
+        while (statsMap.containsKey(missingEnd)) {
+            missingEnd = missingEnd.minusDays(1);
+        }
+        log.info("重建营业数据汇总：{} 至 {}", missingBegin, missingEnd);
+
+        List<DailyBusinessStats> rebuilt = buildFromSource(missingBegin, missingEnd);
+        List<DailyBusinessStats> missing = rebuilt.stream()
+                .filter(stats -> !statsMap.containsKey(stats.getStatDate()))
+                .collect(Collectors.toList());
+        dailyBusinessStatsMapper.insertOrReplaceBatch(missing);
+
+        missing.forEach(stats -> statsMap.put(stats.getStatDate(), stats));
+        return statsMap.values().stream()
+                .sorted((a, b) -> a.getStatDate().compareTo(b.getStatDate()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 按订单表和用户表重建指定日期区间的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> rebuild(LocalDate begin, LocalDate end) {
+        List<DailyBusinessStats> statsList = buildFromSource(begin, end);
+        dailyBusinessStatsMapper.insertOrReplaceBatch(statsList);
+        return statsList;
+    }
+
+    /**
+     * 查询指定日期区间每天的汇总数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    public List<DailyBusinessStats> listDaily(LocalDate begin, LocalDate end) {
+        LocalDate today = LocalDate.now();
+        LocalDate closedEnd = end.isBefore(today) ? end : today.minusDays(1);
+
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        if (!closedEnd.isBefore(begin)) {
+            statsList.addAll(listClosedDays(begin, closedEnd));
+        }
+        //当天及之后的日期尚未结束，实时统计且不写入汇总表
+        LocalDate liveBegin = closedEnd.plusDays(1).isAfter(begin) ? closedEnd.plusDays(1) : begin;
+        if (!liveBegin.isAfter(end)) {
+            statsList.addAll(buildFromSource(liveBegin, end));
+        }
+        return statsList;
+    }
+
+    /**
+     * 通过两次分组查询计算指定日期区间每天的汇总数据，没有数据的日期补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<DailyBusinessStats> buildFromSource(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        Map<LocalDate, DailyOrderStatDTO> orderStatMap = orderMapper.sumGroupByDate(beginTime, endTime).stream()
+                .collect(Collectors.toMap(DailyOrderStatDTO::getDate, Function.identity()));
+        Map<LocalDate, Integer> newUserMap = userMapper.countGroupByDate(beginTime, endTime).stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getDate, DailyUserStatDTO::getNewUsers));
+
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessStats stats = emptyStats(date);
+            DailyOrderStatDTO orderStat = orderStatMap.get(date);
+            if (orderStat != null) {
+                stats.setOrderCount(orderStat.getOrderCount());
+                stats.setValidOrderCount(orderStat.getValidOrderCount());
+                stats.setTurnover(orderStat.getTurnover() == null ? BigDecimal.ZERO : BigDecimal.valueOf(orderStat.getTurnover()));
+            }
+            stats.setNewUsers(newUserMap.getOrDefault(date, 0));
+            statsList.add(stats);
+        }
+        return statsList;
+    }
+
+    /**
+     * 累加汇总数据
+     * 在事务中调用时推迟到事务提交后执行，汇总行的行锁不会持有到业务事务结束，
+     * 各节点的下单事务不会在同一行汇总数据上排队；事务回滚时不累加
+     * @param delta
+     */
+    private void increment(DailyBusinessStats delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            doIncrement(delta);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    doIncrement(delta);
+                } catch (RuntimeException e) {
+                    //业务数据已提交，汇总数据的偏差由重建修正
+                    log.warn("累加营业数据汇总失败：{}", delta, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 当天的记录不存在时直接插入；历史日期的记录不存在时说明尚未汇总，留给重建处理，避免写入不完整的数据
+     * @param delta
+     */
+    private void doIncrement(DailyBusinessStats delta) {
+        if (delta.getStatDate().equals(LocalDate.now())) {
+            dailyBusinessStatsMapper.insertOrIncrement(delta);
+        } else {
+            dailyBusinessStatsMapper.increment(delta);
+        }
+    }
+
+    private DailyBusinessStats emptyStats(LocalDate date) {
+        return DailyBusinessStats.builder()
+                .statDate(date)
+                .orderCount(0)
+                .validOrderCount(0)
+                .turnover(BigDecimal.ZERO)
+                .newUsers(0)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+}
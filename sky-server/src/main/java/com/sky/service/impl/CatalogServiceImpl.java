@@ -0,0 +1,289 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.entity.SetmealDish;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.service.CatalogService;
+import com.sky.vo.DishItemVO;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * C端菜单数据的进程内快照
+ * 分类、起售菜品及口味、起售套餐及菜品选项用5条查询整体加载，构建成按分类分组的只读快照后整体替换，
+ * 读请求直接读取当前快照，不访问Redis和MySQL；
+ * 管理端修改菜单后递增Redis中的全局版本号，其他节点由定时任务比较版本号后重建；
+ * 快照是C端菜单读取的第一层，Redis菜品缓存(DishCacheService)、两级套餐缓存(TwoLevelCacheManager)及其击穿保护
+ * 只在快照尚未就绪(启动后首次构建完成前、构建一直失败)时承接读请求，避免此时的流量直接落到MySQL
+ */
+@Service
+@Slf4j
+public class CatalogServiceImpl implements CatalogService {
+
+    //菜单快照的全局版本号
+    public static final String VERSION_KEY = "sky:catalog:version";
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private DishFlavorMapper dishFlavorMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    @Autowired
+    private SetmealDishMapper setmealDishMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //当前快照，只整体替换，不修改其中的数据
+    private volatile CatalogSnapshot snapshot;
+
+    /**
+     * 应用启动后加载快照，失败时由定时任务重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        syncVersion();
+    }
+
+    /**
+     * 根据类型查询启用的分类
+     * @param type
+     * @return
+     */
+    public List<Category> listCategories(Integer type) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        if (type == null) {
+            return current.categories;
+        }
+        return current.categoriesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * 根据分类id查询起售中的菜品及口味
+     * @param categoryId
+     * @return
+     */
+    public List<DishVO> listDishes(Long categoryId) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return current.dishesByCategory.getOrDefault(categoryId, Collections.emptyList());
+    }
+
+    /**
+     * 根据分类id查询起售中的套餐
+     * @param categoryId
+     * @return
+     */
+    public List<Setmeal> listSetmeals(Long categoryId) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return current.setmealsByCategory.getOrDefault(categoryId, Collections.emptyList());
+    }
+
+    /**
+     * 根据套餐id查询起售中套餐的菜品选项，停售的套餐不在快照中，返回null
+     * @param setmealId
+     * @return
+     */
+    public List<DishItemVO> listDishItems(Long setmealId) {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return current.dishItemsBySetmeal.get(setmealId);
+    }
+
+    /**
+     * 菜单数据发生变更后调用，递增全局版本号并重建本节点的快照
+     */
+    public void refresh() {
+        long version;
+        try {
+            version = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        } catch (RuntimeException e) {
+            //Redis不可用时只重建本节点，其他节点在版本号下次递增时同步
+            log.warn("递增菜单版本号失败", e);
+            CatalogSnapshot current = snapshot;
+            version = current == null ? 0 : current.version;
+        }
+        rebuild(version);
+    }
+
+    /**
+     * 全局版本号比本节点快照新时重建快照
+     */
+    public void syncVersion() {
+        long version;
+        try {
+            String value = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            version = value == null ? 0 : Long.parseLong(value);
+        } catch (RuntimeException e) {
+            log.warn("查询菜单版本号失败", e);
+            if (snapshot != null) {
+                return;
+            }
+            version = 0;
+        }
+        CatalogSnapshot current = snapshot;
+        if (current == null || current.version < version) {
+            rebuild(version);
+        }
+    }
+
+    /**
+     * 从数据库加载并替换快照，加锁保证后开始的重建一定读到更新的数据
+     * @param version
+     */
+    private synchronized void rebuild(long version) {
+        try {
+            long start = System.currentTimeMillis();
+            CatalogSnapshot built = build(version);
+            snapshot = built;
+            log.info("菜单快照已重建，版本：{}，菜品：{}，套餐：{}，耗时：{}ms", version,
+                    built.dishCount, built.dishItemsBySetmeal.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            //保留原有快照继续提供服务
+            log.error("菜单快照重建失败，版本：{}", version, e);
+        }
+    }
+
+    private CatalogSnapshot build(long version) {
+        //启用的分类，已按排序字段排好序
+        List<Category> categories = categoryMapper.list(null);
+
+        //全部菜品，起售的进入菜单，套餐菜品选项的图片和描述也从中获取
+        List<Dish> dishes = dishMapper.listAll();
+        Map<Long, List<DishFlavor>> flavorMap = groupByNonNull(dishFlavorMapper.getByDishStatus(StatusConstant.ENABLE),
+                DishFlavor::getDishId);
+        Map<Long, Dish> dishMap = new HashMap<>();
+        Map<Long, List<DishVO>> dishesByCategory = new HashMap<>();
+        int dishCount = 0;
+        for (Dish dish : dishes) {
+            dishMap.put(dish.getId(), dish);
+            if (!StatusConstant.ENABLE.equals(dish.getStatus()) || dish.getCategoryId() == null) {
+                //停售或没有分类的菜品不进入菜单
+                continue;
+            }
+            DishVO dishVO = new DishVO();
+            BeanUtils.copyProperties(dish, dishVO);
+            dishVO.setFlavors(Collections.unmodifiableList(flavorMap.getOrDefault(dish.getId(), new ArrayList<>())));
+            dishesByCategory.computeIfAbsent(dish.getCategoryId(), key -> new ArrayList<>()).add(dishVO);
+            dishCount++;
+        }
+
+        //起售的套餐及其菜品选项
+        Setmeal condition = new Setmeal();
+        condition.setStatus(StatusConstant.ENABLE);
+        List<Setmeal> setmeals = setmealMapper.list(condition);
+        Map<Long, List<DishItemVO>> dishItemsBySetmeal = new HashMap<>();
+        for (Setmeal setmeal : setmeals) {
+            dishItemsBySetmeal.put(setmeal.getId(), new ArrayList<>());
+        }
+        for (SetmealDish setmealDish : setmealDishMapper.getBySetmealStatus(StatusConstant.ENABLE)) {
+            List<DishItemVO> items = dishItemsBySetmeal.get(setmealDish.getSetmealId());
+            if (items == null) {
+                //两次查询之间套餐状态发生了变化，以套餐查询结果为准
+                continue;
+            }
+            Dish dish = dishMap.get(setmealDish.getDishId());
+            items.add(DishItemVO.builder()
+                    .name(setmealDish.getName())
+                    .copies(setmealDish.getCopies())
+                    .image(dish == null ? null : dish.getImage())
+                    .description(dish == null ? null : dish.getDescription())
+                    .build());
+        }
+
+        return new CatalogSnapshot(version,
+                Collections.unmodifiableList(categories),
+                unmodifiable(groupByNonNull(categories, Category::getType)),
+                unmodifiable(dishesByCategory),
+                unmodifiable(groupByNonNull(setmeals, Setmeal::getCategoryId)),
+                unmodifiable(dishItemsBySetmeal),
+                dishCount);
+    }
+
+    /**
+     * 按key分组并保持原有顺序，key为null的数据(如缺少分类的脏数据)跳过，不影响整个快照的构建
+     */
+    private static <K, V> Map<K, List<V>> groupByNonNull(List<V> list, Function<V, K> keyExtractor) {
+        Map<K, List<V>> result = new HashMap<>();
+        for (V value : list) {
+            K key = keyExtractor.apply(value);
+            if (key != null) {
+                result.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+            }
+        }
+        return result;
+    }
+
+    private static <K, V> Map<K, List<V>> unmodifiable(Map<K, List<V>> map) {
+        Map<K, List<V>> result = new HashMap<>(map.size() * 2);
+        map.forEach((key, value) -> result.put(key, Collections.unmodifiableList(value)));
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * 某一版本的菜单数据，构建完成后不再修改
+     */
+    private static class CatalogSnapshot {
+        private final long version;
+        private final List<Category> categories;
+        private final Map<Integer, List<Category>> categoriesByType;
+        private final Map<Long, List<DishVO>> dishesByCategory;
+        private final Map<Long, List<Setmeal>> setmealsByCategory;
+        private final Map<Long, List<DishItemVO>> dishItemsBySetmeal;
+        private final int dishCount;
+
+        CatalogSnapshot(long version,
+                        List<Category> categories,
+                        Map<Integer, List<Category>> categoriesByType,
+                        Map<Long, List<DishVO>> dishesByCategory,
+                        Map<Long, List<Setmeal>> setmealsByCategory,
+                        Map<Long, List<DishItemVO>> dishItemsBySetmeal,
+                        int dishCount) {
+            this.version = version;
+            this.categories = categories;
+            this.categoriesByType = categoriesByType;
+            this.dishesByCategory = dishesByCategory;
+            this.setmealsByCategory = setmealsByCategory;
+            this.dishItemsBySetmeal = dishItemsBySetmeal;
+            this.dishCount = dishCount;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.sky.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.dto.CoordinateDTO;
+import com.sky.entity.AddressBook;
+import com.sky.exception.OrderBusinessException;
+import com.sky.properties.DeliveryProperties;
+import com.sky.service.DeliveryRangeService;
+import com.sky.service.GeocodeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 配送范围校验
+ * 店铺坐标只在启动和店铺地址变化时解析，收货地址坐标按地址簿id缓存，配送距离按坐标对缓存，
+ * 缓存命中时下单不再依赖地图接口
+ */
+@Service
+@Slf4j
+public class DeliveryRangeServiceImpl implements DeliveryRangeService {
+
+    @Autowired
+    private GeocodeService geocodeService;
+
+    @Autowired
+    private DeliveryProperties deliveryProperties;
+
+    @Autowired
+    private Environment environment;
+
+    //店铺坐标及其对应的店铺地址，地址变化时重新解析
+    private volatile AddressCoordinate shopCoordinate;
+
+    //收货地址坐标缓存，key为地址簿id
+    private Cache<Long, AddressCoordinate> addressCoordinateCache;
+
+    //配送距离缓存，key为"店铺坐标->收货坐标"
+    private Cache<String, Integer> distanceCache;
+
+    @PostConstruct
+    public void init() {
+        addressCoordinateCache = Caffeine.newBuilder()
+                .maximumSize(deliveryProperties.getCoordinateCacheSize())
+                .expireAfterWrite(deliveryProperties.getCoordinateExpireHours(), TimeUnit.HOURS)
+                .build();
+        distanceCache = Caffeine.newBuilder()
+                .maximumSize(deliveryProperties.getDistanceCacheSize())
+                .expireAfterWrite(deliveryProperties.getDistanceExpireHours(), TimeUnit.HOURS)
+                .build();
+    }
+
+    /**
+     * 应用启动后预先解析店铺坐标，失败时在首次下单时重试
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshShopCoordinate() {
+        String shopAddress = environment.getProperty("sky.shop.address");
+        CoordinateDTO coordinate = geocodeService.geocode(shopAddress);
+        if (coordinate == null) {
+            log.warn("店铺地址解析失败：{}", shopAddress);
+            return;
+        }
+        log.info("店铺坐标：{} -> {}", shopAddress, coordinate.toLatLng());
+        shopCoordinate = new AddressCoordinate(shopAddress, coordinate);
+    }
+
+    /**
+     * 检查收货地址是否超出配送范围
+     * @param addressBook
+     */
+    public void checkOutOfRange(AddressBook addressBook) {
+        //获取店铺的经纬度坐标
+        CoordinateDTO shop = getShopCoordinate();
+
+        //获取用户收货地址的经纬度坐标
+        CoordinateDTO user = getAddressCoordinate(addressBook);
+
+        //路线规划
+        String distanceKey = shop.toLatLng() + "->" + user.toLatLng();
+        Integer distance = distanceCache.getIfPresent(distanceKey);
+        if (distance == null) {
+            distance = geocodeService.drivingDistance(shop, user);
+            if (distance == null) {
+                throw new OrderBusinessException("配送路线规划失败");
+            }
+            distanceCache.put(distanceKey, distance);
+        }
+
+        if (distance > deliveryProperties.getMaxDistance()) {
+            //配送距离超过最大配送距离
+            throw new OrderBusinessException("超出配送范围");
+        }
+    }
+
+    /**
+     * 清除收货地址坐标缓存
+     * @param addressBookId
+     */
+    public void evictAddress(Long addressBookId) {
+        addressCoordinateCache.invalidate(addressBookId);
+    }
+
+    private CoordinateDTO getShopCoordinate() {
+        AddressCoordinate current = shopCoordinate;
+        String shopAddress = environment.getProperty("sky.shop.address");
+        if (current == null || !current.getAddress().equals(shopAddress)) {
+            //尚未解析成功或店铺地址配置已变化
+            refreshShopCoordinate();
+            current = shopCoordinate;
+            if (current == null || !current.getAddress().equals(shopAddress)) {
+                throw new OrderBusinessException("店铺地址解析失败");
+            }
+        }
+        return current.getCoordinate();
+    }
+
+    private CoordinateDTO getAddressCoordinate(AddressBook addressBook) {
+        String address = addressBook.getCityName() + addressBook.getDistrictName() + addressBook.getDetail();
+
+        //缓存中的地址文本与当前不一致时视为失效
+        AddressCoordinate cached = addressCoordinateCache.getIfPresent(addressBook.getId());
+        if (cached != null && cached.getAddress().equals(address)) {
+            return cached.getCoordinate();
+        }
+
+        CoordinateDTO coordinate = geocodeService.geocode(address);
+        if (coordinate == null) {
+            throw new OrderBusinessException("收货地址解析失败");
+        }
+        addressCoordinateCache.put(addressBook.getId(), new AddressCoordinate(address, coordinate));
+        return coordinate;
+    }
+
+    /**
+     * 地址文本及其坐标
+     */
+    private static class AddressCoordinate {
+        private final String address;
+        private final CoordinateDTO coordinate;
+
+        AddressCoordinate(String address, CoordinateDTO coordinate) {
+            this.address = address;
+            this.coordinate = coordinate;
+        }
+
+        String getAddress() {
+            return address;
+        }
+
+        CoordinateDTO getCoordinate() {
+            return coordinate;
+        }
+    }
+}
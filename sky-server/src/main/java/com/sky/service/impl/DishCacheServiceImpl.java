@@ -0,0 +1,125 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CachedValue;
+import com.sky.cache.StampedeGuard;
+import com.sky.service.DishCacheService;
+import com.sky.vo.DishVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * C端菜品列表的Redis缓存
+ * 每个分类维护一个版本号，缓存key中带上当前版本号；失效时只需递增版本号，
+ * 旧版本的key不再被读取，失效时直接删除(开启先返回上一版本数据时保留很短的时间)，不再需要用KEYS扫描整个键空间；
+ * 未命中时由StampedeGuard合并并发重建，可选提前刷新和先返回上一版本数据；
+ * C端菜品列表优先读取菜单快照(CatalogService)，本缓存只在快照尚未就绪时承接读请求
+ */
+@Service
+@Slf4j
+public class DishCacheServiceImpl implements DishCacheService {
+
+    //菜品缓存的过期时间(小时)，同时决定旧版本缓存最多保留多久
+    private static final long CACHE_EXPIRE_HOURS = 24;
+
+    //开启先返回上一版本数据时，失效后旧版本缓存保留的时间(秒)，覆盖当前版本的一次后台重建
+    private static final long STALE_GRACE_SECONDS = 30;
+
+    @Autowired
+    private RedisTemplate redisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private StampedeGuard stampedeGuard;
+
+    /**
+     * 查询分类下的菜品缓存，未命中时调用loader查询数据库并写入缓存
+     * 版本号在查询数据库前读取，查询期间版本号被递增时，结果写入旧版本的key，不会被后续请求读取
+     * @param categoryId
+     * @param loader
+     * @return
+     */
+    public List<DishVO> get(Long categoryId, Supplier<List<DishVO>> loader) {
+        long version = getVersion(categoryId);
+        String key = dataKey(categoryId, version);
+
+        CachedValue<List<DishVO>> cached = read(key);
+        if (cached != null) {
+            if (stampedeGuard.shouldRefreshEarly(cached)) {
+                //即将过期，后台提前重建
+                stampedeGuard.refreshAsync(key, () -> loadAndWrite(key, loader));
+            }
+            return cached.getValue();
+        }
+
+        if (stampedeGuard.isStaleWhileRevalidate() && version > 0) {
+            CachedValue<List<DishVO>> stale = read(dataKey(categoryId, version - 1));
+            if (stale != null) {
+                //先返回上一版本的数据，后台重建当前版本
+                stampedeGuard.refreshAsync(key, () -> loadAndWrite(key, loader));
+                return stale.getValue();
+            }
+        }
+
+        return stampedeGuard.load(key, () -> read(key), () -> loadAndWrite(key, loader)).getValue();
+    }
+
+    /**
+     * 递增指定分类的版本号并删除上一版本的缓存，每个分类O(1)次操作，与键空间大小无关
+     * @param categoryIds
+     */
+    public void evict(Collection<Long> categoryIds) {
+        for (Long categoryId : categoryIds) {
+            if (categoryId == null) {
+                continue;
+            }
+            Long version = stringRedisTemplate.opsForValue().increment(versionKey(categoryId));
+            if (version == null) {
+                continue;
+            }
+            String oldKey = dataKey(categoryId, version - 1);
+            if (stampedeGuard.isStaleWhileRevalidate()) {
+                redisTemplate.expire(oldKey, STALE_GRACE_SECONDS, TimeUnit.SECONDS);
+            } else {
+                redisTemplate.delete(oldKey);
+            }
+        }
+        log.info("菜品缓存失效，分类：{}", categoryIds);
+    }
+
+    private CachedValue<List<DishVO>> read(String key) {
+        return (CachedValue<List<DishVO>>) redisTemplate.opsForValue().get(key);
+    }
+
+    private CachedValue<List<DishVO>> loadAndWrite(String key, Supplier<List<DishVO>> loader) {
+        long start = System.currentTimeMillis();
+        List<DishVO> list = loader.get();
+        long now = System.currentTimeMillis();
+        CachedValue<List<DishVO>> cached = new CachedValue<>(list, now - start,
+                now + TimeUnit.HOURS.toMillis(CACHE_EXPIRE_HOURS));
+        redisTemplate.opsForValue().set(key, cached, CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
+        return cached;
+    }
+
+    private long getVersion(Long categoryId) {
+        String version = stringRedisTemplate.opsForValue().get(versionKey(categoryId));
+        return version == null ? 0 : Long.parseLong(version);
+    }
+
+    private static String versionKey(Long categoryId) {
+        return "dish_version_" + categoryId;
+    }
+
+    private static String dataKey(Long categoryId, long version) {
+        return "dish_" + categoryId + "_v" + version;
+    }
+}
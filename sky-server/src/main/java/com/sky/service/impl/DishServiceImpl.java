@@ -16,6 +16,7 @@ import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
 import com.sky.service.DishService;
+import com.sky.utils.BatchLoader;
 import com.sky.vo.DishVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -25,6 +26,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @program: CqWorkspace
@@ -89,10 +91,14 @@ public class DishServiceImpl implements DishService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
+        //没有要删除的菜品，in ()在MySQL中是语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
         // 判断菜品是否能够删除--是否存在起售中的菜品??
-        for (Long id : ids) {
-            Dish dish = dishMapper.getById(id);
-            if(dish.getStatus() == StatusConstant.ENABLE){
+        List<Dish> dishes = dishMapper.getByIds(ids);
+        for (Dish dish : dishes) {
+            if(StatusConstant.ENABLE.equals(dish.getStatus())){
                 //当前菜品处于起售中,不能删除
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
@@ -106,11 +112,9 @@ public class DishServiceImpl implements DishService {
         }
 
         //删除菜品表中的菜品数据
-        for (Long id : ids) {
-            dishMapper.deleteById(id);
-            //删除菜品关联的口味数据
-            dishFlavorMapper.deleteById(id);
-        }
+        dishMapper.deleteByIds(ids);
+        //删除菜品关联的口味数据
+        dishFlavorMapper.deleteByDishIds(ids);
     }
 
     /**
@@ -122,7 +126,7 @@ public class DishServiceImpl implements DishService {
         Dish dish = dishMapper.getById(id);
 
         //根据id查询口味数据
-        List<DishFlavor> dishFlavors = dishFlavorMapper.getById(id);
+        List<DishFlavor> dishFlavors = flavorLoader().load(id);
 
         //将查询到的数据封装到VO
         DishVO dishVO = new DishVO();
@@ -169,9 +173,9 @@ public class DishServiceImpl implements DishService {
             List<Long> ids = new ArrayList<>();
             ids.add(id);
             List<Long> setmealIds = setmealDishMapper.getSetmealIdsByDishIds(ids);
-            for (Long setmealId : setmealIds) {
-                Setmeal setmeal = Setmeal.builder().status(status).id(setmealId).build();
-                setmealMapper.update(setmeal);
+            if (setmealIds != null && setmealIds.size() > 0) {
+                Setmeal setmeal = Setmeal.builder().status(status).build();
+                setmealMapper.updateStatusByIds(setmeal, setmealIds);
             }
         }
 
@@ -200,12 +204,16 @@ public class DishServiceImpl implements DishService {
 
         List<DishVO> dishVOList = new ArrayList<>();
 
+        //登记所有菜品id，第一次取口味时一次查询全部菜品的口味
+        BatchLoader<Long, List<DishFlavor>> flavorLoader = flavorLoader()
+                .prime(dishList.stream().map(Dish::getId).collect(Collectors.toList()));
+
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
 
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getById(d.getId());
+            //根据菜品id获取对应的口味
+            List<DishFlavor> flavors = flavorLoader.load(d.getId());
 
             dishVO.setFlavors(flavors);
             dishVOList.add(dishVO);
@@ -213,4 +221,21 @@ public class DishServiceImpl implements DishService {
 
         return dishVOList;
     }
+
+    /**
+     * 菜品id -> 口味列表的批量加载器
+     * @return
+     */
+    private BatchLoader<Long, List<DishFlavor>> flavorLoader() {
+        return BatchLoader.grouping(dishFlavorMapper::getByDishIds, DishFlavor::getDishId);
+    }
+
+    /**
+     * 根据菜品id查询所属的分类id
+     * @param ids
+     * @return
+     */
+    public List<Long> getCategoryIdsByIds(List<Long> ids) {
+        return dishMapper.getCategoryIdsByIds(ids);
+    }
 }
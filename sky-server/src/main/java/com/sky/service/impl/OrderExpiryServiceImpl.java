@@ -0,0 +1,181 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.OrderExpiryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于延迟队列的订单超时取消
+ * 所有待支付订单按截止时间登记在Redis的ZSET中，支付或取消时移除；
+ * 本节点下单的订单同时放入内存中的DelayQueue，到期时立即处理，
+ * 其他节点登记的订单(如下单节点已重启)由定时任务每秒从ZSET中取出到期的订单处理；
+ * 先按待支付状态条件取消订单再从ZSET中移除，多个节点同时处理同一订单时只有一个能修改成功，不覆盖已支付的订单；
+ * 取消失败的订单仍在ZSET中，下一秒重试
+ */
+@Service
+@Slf4j
+public class OrderExpiryServiceImpl implements OrderExpiryService {
+
+    //待支付订单，member为订单id，score为截止时间(毫秒)
+    public static final String EXPIRY_KEY = "sky:order:expiry";
+
+    //支付时限(分钟)
+    public static final int PAYMENT_TIMEOUT_MINUTES = 15;
+
+    //每次从ZSET中取出的到期订单数
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //本节点登记的订单，支付或取消时不从队列中删除，到期时已不在ZSET中即跳过
+    private final DelayQueue<ExpiryItem> delayQueue = new DelayQueue<>();
+
+    private Thread worker;
+
+    @PostConstruct
+    public void init() {
+        worker = new Thread(this::consume, "order-expiry");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        worker.interrupt();
+    }
+
+    /**
+     * 登记新下单的订单
+     * @param orderId
+     * @param orderTime
+     */
+    public void schedule(Long orderId, LocalDateTime orderTime) {
+        long deadline = orderTime.plusMinutes(PAYMENT_TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try {
+            stringRedisTemplate.opsForZSet().add(EXPIRY_KEY, orderId.toString(), deadline);
+        } catch (RuntimeException e) {
+            //登记失败时由定时对账任务兜底取消
+            log.warn("登记订单超时取消失败：{}", orderId, e);
+            return;
+        }
+        delayQueue.put(new ExpiryItem(orderId, deadline));
+    }
+
+    /**
+     * 移除已支付或已取消的订单
+     * @param orderId
+     */
+    public void unschedule(Long orderId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(EXPIRY_KEY, orderId.toString());
+        } catch (RuntimeException e) {
+            //未移除的订单到期时按状态条件取消，不会影响已支付的订单
+            log.warn("移除订单超时取消失败：{}", orderId, e);
+        }
+    }
+
+    /**
+     * 取消ZSET中所有已到期的订单
+     */
+    public void expireDue() {
+        int count = 0;
+        boolean failed = false;
+        while (!failed) {
+            Set<String> orderIds = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(EXPIRY_KEY, 0, System.currentTimeMillis(), 0, BATCH_SIZE);
+            if (orderIds == null || orderIds.isEmpty()) {
+                break;
+            }
+            for (String orderId : orderIds) {
+                try {
+                    if (expire(Long.valueOf(orderId))) {
+                        count++;
+                    }
+                } catch (RuntimeException e) {
+                    //失败的订单仍在ZSET中，本轮不再重复读取，下一轮重试
+                    log.warn("订单超时取消失败：{}", orderId, e);
+                    failed = true;
+                }
+            }
+            if (orderIds.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        if (count > 0) {
+            log.info("取消到期未支付订单{}条", count);
+        }
+    }
+
+    /**
+     * 处理本节点队列中到期的订单
+     */
+    private void consume() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Long orderId = delayQueue.take().orderId;
+                if (stringRedisTemplate.opsForZSet().score(EXPIRY_KEY, orderId.toString()) != null) {
+                    expire(orderId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                //处理失败的订单仍在ZSET中，由每秒执行的定时任务重试
+                log.warn("订单超时取消失败", e);
+            }
+        }
+    }
+
+    /**
+     * 按待支付状态条件取消订单，成功后再从ZSET中移除，取消失败时订单仍在ZSET中等待重试
+     * @param orderId
+     * @return 是否由本次调用取消
+     */
+    private boolean expire(Long orderId) {
+        Orders orders = Orders.builder()
+                .id(orderId)
+                .status(Orders.CANCELLED)
+                .cancelReason("订单超时，自动取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        //已支付、已取消或已被其他节点处理的订单修改0行
+        int updated = orderMapper.updateByIdAndStatus(orders, Orders.PENDING_PAYMENT);
+        stringRedisTemplate.opsForZSet().remove(EXPIRY_KEY, orderId.toString());
+        return updated > 0;
+    }
+
+    private static class ExpiryItem implements Delayed {
+        private final Long orderId;
+        private final long deadline;
+
+        ExpiryItem(Long orderId, long deadline) {
+            this.orderId = orderId;
+            this.deadline = deadline;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((ExpiryItem) other).deadline);
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
@@ -13,25 +12,34 @@ import com.sky.exception.AddressBookBusinessException;
 import com.sky.exception.OrderBusinessException;
 import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.*;
+import com.sky.result.CursorPageResult;
 import com.sky.result.PageResult;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.DeliveryRangeService;
+import com.sky.service.OrderExpiryService;
+import com.sky.service.OrderNumberService;
 import com.sky.service.OrderService;
-import com.sky.utils.HttpClientUtil;
+import com.sky.service.ShoppingCartService;
+import com.sky.utils.BatchLoader;
 import com.sky.utils.WeChatPayUtil;
 import com.sky.vo.OrderPaymentVO;
 import com.sky.vo.OrderStatisticsVO;
 import com.sky.vo.OrderSubmitVO;
 import com.sky.vo.OrderVO;
-import com.sky.websocket.WebSocketServer;
+import com.sky.websocket.WebSocketBroadcaster;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +65,7 @@ public class OrderServiceImpl implements OrderService {
     private AddressBookMapper addressBookMapper;
 
     @Autowired
-    private ShoppingCartMapper shoppingCartMapper;
+    private ShoppingCartService shoppingCartService;
 
     @Autowired
     private UserMapper userMapper;
@@ -66,21 +74,45 @@ public class OrderServiceImpl implements OrderService {
     private WeChatPayUtil weChatPayUtil;
 
     @Autowired
-    private WebSocketServer webSocketServer;
+    private WebSocketBroadcaster webSocketBroadcaster;
 
-    @Value("${sky.shop.address}")
-    private String shopAddress;
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    //下单各阶段耗时指标
+    private static final String SUBMIT_PHASE_METRIC = "sky.order.submit.phase";
+
+    //游标分页默认每页条数
+    private static final int DEFAULT_CURSOR_PAGE_SIZE = 10;
+
+    //游标分页每页最大条数，避免一次请求把大量订单及明细加载到内存
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
+    @Autowired
+    private DeliveryRangeService deliveryRangeService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
-    @Value("${sky.baidu.ak}")
-    private String ak;
+    @Autowired
+    private OrderNumberService orderNumberService;
+
+    @Autowired
+    private OrderExpiryService orderExpiryService;
 
     /**
      * 用户下单
+     * 校验阶段(地址簿、配送范围、购物车)不开启事务，调用地图接口期间不占用数据库连接；
+     * 写入阶段只包含订单、订单明细的插入，在一个短事务中完成，提交后再清空购物车
      * @param ordersSubmitDTO
      * @return
      */
-    @Transactional
     public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
+        Timer.Sample validateSample = Timer.start(meterRegistry);
+
         //处理各种业务异常(地址簿为空，购物车数据为空)
         //查询地址簿
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
@@ -90,33 +122,60 @@ public class OrderServiceImpl implements OrderService {
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
 
-        //检查用户收货地址是否超出范围
-        checkOutOfRange(addressBook.getCityName()+addressBook.getDistrictName()+addressBook.getDetail());
-
         //查询当前用户购物车数据
-        ShoppingCart shoppingCart = new ShoppingCart();
         Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppingCart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.listByUserId(userId);
 
         if(shoppingCartList == null || shoppingCartList.size() == 0){
             //抛出异常
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
 
+        //检查用户收货地址是否超出范围
+        deliveryRangeService.checkOutOfRange(addressBook);
+
+        validateSample.stop(meterRegistry.timer(SUBMIT_PHASE_METRIC, "phase", "validate"));
+
+        //写入阶段，事务的耗时即数据库连接的占用时间
+        Timer.Sample writeSample = Timer.start(meterRegistry);
+        OrderSubmitVO orderSubmitVO;
+        try {
+            orderSubmitVO = transactionTemplate.execute(status -> saveOrder(ordersSubmitDTO, addressBook, userId, shoppingCartList));
+        } finally {
+            writeSample.stop(meterRegistry.timer(SUBMIT_PHASE_METRIC, "phase", "write"));
+        }
+
+        //订单写入成功后登记超时取消，从购物车中扣除已下单的商品，下单期间新加入的商品保留
+        orderExpiryService.schedule(orderSubmitVO.getId(), orderSubmitVO.getOrderTime());
+        shoppingCartService.cleanOrdered(userId, shoppingCartList);
+
+        return orderSubmitVO;
+    }
+
+    /**
+     * 插入订单和订单明细
+     * @param ordersSubmitDTO
+     * @param addressBook
+     * @param userId
+     * @param shoppingCartList
+     * @return
+     */
+    private OrderSubmitVO saveOrder(OrdersSubmitDTO ordersSubmitDTO, AddressBook addressBook, Long userId,
+                                    List<ShoppingCart> shoppingCartList) {
         //向订单表插1条数据
         Orders orders = new Orders();
         BeanUtils.copyProperties(ordersSubmitDTO,orders);
         orders.setOrderTime(LocalDateTime.now());
         orders.setPayStatus(Orders.UN_PAID);
         orders.setStatus(Orders.PENDING_PAYMENT);
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
+        orders.setNumber(orderNumberService.nextNumber());
         orders.setPhone(addressBook.getPhone());
         orders.setConsignee(addressBook.getConsignee());
         orders.setUserId(userId);
         orders.setAddress(addressBook.getDetail());
 
         orderMapper.insert(orders);
+        businessStatsService.recordOrderSubmitted(orders);
 
         //向订单明细表插入n条数据
         List<OrderDetail> orderDetailList = new ArrayList<>();
@@ -128,9 +187,6 @@ public class OrderServiceImpl implements OrderService {
         }
         orderDetailMapper.insertBatch(orderDetailList);
 
-        //清空当前用户购物车数据
-        shoppingCartMapper.deleteByUserId(userId);
-
         //封装vo返回结果
         OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
                 .id(orders.getId())
@@ -191,7 +247,13 @@ public class OrderServiceImpl implements OrderService {
                 .checkoutTime(LocalDateTime.now())
                 .build();
 
-        orderMapper.update(orders);
+        //只有待支付的订单才能改为已支付，避免与超时取消并发时把已取消的订单改回待接单
+        if (orderMapper.updateByIdAndStatus(orders, Orders.PENDING_PAYMENT) == 0) {
+            handlePaidAfterStatusChange(ordersDB.getId(), outTradeNo);
+            return;
+        }
+        businessStatsService.recordOrderStatusChange(ordersDB, orders.getStatus());
+        orderExpiryService.unschedule(ordersDB.getId());
 
         //通过websocket向客户端浏览器推送消息
         HashMap map = new HashMap();
@@ -200,7 +262,36 @@ public class OrderServiceImpl implements OrderService {
         map.put("content","订单号" + outTradeNo);
 
         String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        webSocketBroadcaster.broadcast(json);
+    }
+
+    /**
+     * 支付成功时订单已不是待支付状态：已被取消(如超时取消)的订单退款，重复的支付通知直接忽略
+     * @param orderId
+     * @param outTradeNo
+     */
+    private void handlePaidAfterStatusChange(Long orderId, String outTradeNo) {
+        Orders current = orderMapper.getById(orderId);
+        if (!Orders.CANCELLED.equals(current.getStatus())) {
+            log.info("重复的支付通知，订单号：{}，订单状态：{}", outTradeNo, current.getStatus());
+            return;
+        }
+
+        log.warn("订单已取消后收到支付通知，发起退款，订单号：{}", outTradeNo);
+        Orders orders = Orders.builder().id(orderId).build();
+        try {
+            weChatPayUtil.refund(
+                    outTradeNo, //商户订单号
+                    outTradeNo, //商户退款单号
+                    new BigDecimal(0.01),//退款金额，单位 元
+                    new BigDecimal(0.01));//原订单金额
+            orders.setPayStatus(Orders.REFUND);
+        } catch (Exception e) {
+            //退款失败时标记为已支付，由商家人工退款
+            log.error("已取消订单退款失败，需人工处理，订单号：{}", outTradeNo, e);
+            orders.setPayStatus(Orders.PAID);
+        }
+        orderMapper.update(orders);
     }
 
     /**
@@ -217,9 +308,10 @@ public class OrderServiceImpl implements OrderService {
         Page<OrderVO> page = orderMapper.pageQuery(ordersPageQueryDTO);
 
         if(page != null && page.getTotal() > 0){
+            //一次查询当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
             for (OrderVO orderVO : page) {
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderVO.getId());
-                orderVO.setOrderDetailList(orderDetailList);
+                orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orderVO.getId(), new ArrayList<>()));
             }
         }
 
@@ -285,6 +377,8 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason("用户取消");
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        businessStatsService.recordOrderStatusChange(ordersDB, orders.getStatus());
+        orderExpiryService.unschedule(ordersDB.getId());
     }
 
     /**
@@ -310,8 +404,8 @@ public class OrderServiceImpl implements OrderService {
             return shoppingCart;
         }).collect(Collectors.toList());
 
-        //将购物车数据插入数据库
-        shoppingCartMapper.insertBatch(shoppingCartList);
+        //将购物车数据加入购物车
+        shoppingCartService.addBatch(shoppingCartList);
     }
 
     /**
@@ -325,22 +419,131 @@ public class OrderServiceImpl implements OrderService {
         Page<OrderVO> page = orderMapper.pageQuery(ordersPageQueryDTO);
 
         if(page != null && page.getTotal() > 0){
+            //一次查询当前页所有订单的明细
+            Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(page.getResult());
             for (OrderVO orderVO : page) {
-                List<OrderDetail> orderDetailList = orderDetailMapper.getByOrderId(orderVO.getId());
-                StringBuilder orderDishes = new StringBuilder("");
-                for (OrderDetail orderDetail : orderDetailList) {
-                    orderDishes.append(orderDetail.getName())
-                            .append("*")
-                            .append(orderDetail.getNumber())
-                            .append(";");
-                }
-                orderVO.setOrderDishes(orderDishes.toString());
+                List<OrderDetail> orderDetailList = orderDetailMap.getOrDefault(orderVO.getId(), new ArrayList<>());
+                orderVO.setOrderDishes(getOrderDishes(orderDetailList));
             }
         }
 
         return new PageResult(page.getTotal(),page.getResult());
     }
 
+    /**
+     * 历史订单游标分页查询
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    public CursorPageResult cursorPageQuery(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        //设置userId
+        ordersCursorQueryDTO.setUserId(BaseContext.getCurrentId());
+
+        CursorPageResult result = cursorQuery(ordersCursorQueryDTO);
+        List<OrderVO> orderVOList = result.getRecords();
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(orderVOList);
+        for (OrderVO orderVO : orderVOList) {
+            orderVO.setOrderDetailList(orderDetailMap.getOrDefault(orderVO.getId(), new ArrayList<>()));
+        }
+        return result;
+    }
+
+    /**
+     * 根据条件游标分页查询订单数据
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    public CursorPageResult cursorConditionSearch(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        CursorPageResult result = cursorQuery(ordersCursorQueryDTO);
+        List<OrderVO> orderVOList = result.getRecords();
+        Map<Long, List<OrderDetail>> orderDetailMap = getOrderDetailMap(orderVOList);
+        for (OrderVO orderVO : orderVOList) {
+            orderVO.setOrderDishes(getOrderDishes(orderDetailMap.getOrDefault(orderVO.getId(), new ArrayList<>())));
+        }
+        return result;
+    }
+
+    /**
+     * 按(下单时间, id)游标查询一页订单，不依赖偏移量，深分页与首页耗时相同
+     * @param ordersCursorQueryDTO
+     * @return
+     */
+    private CursorPageResult cursorQuery(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        if (ordersCursorQueryDTO.getPageSize() <= 0) {
+            ordersCursorQueryDTO.setPageSize(DEFAULT_CURSOR_PAGE_SIZE);
+        } else if (ordersCursorQueryDTO.getPageSize() > MAX_CURSOR_PAGE_SIZE) {
+            ordersCursorQueryDTO.setPageSize(MAX_CURSOR_PAGE_SIZE);
+        }
+        decodeCursor(ordersCursorQueryDTO);
+
+        List<OrderVO> orderVOList = orderMapper.cursorQuery(ordersCursorQueryDTO);
+
+        //本页已取满时返回最后一条记录作为下一页游标
+        String nextCursor = null;
+        if (orderVOList.size() == ordersCursorQueryDTO.getPageSize()) {
+            OrderVO last = orderVOList.get(orderVOList.size() - 1);
+            nextCursor = encodeCursor(last.getOrderTime(), last.getId());
+        }
+
+        //总数需要全量统计，只在调用方明确要求时查询
+        Long total = null;
+        if (Boolean.TRUE.equals(ordersCursorQueryDTO.getWithTotal())) {
+            total = orderMapper.countCursorQuery(ordersCursorQueryDTO);
+        }
+
+        return new CursorPageResult(orderVOList, nextCursor, total);
+    }
+
+    private String encodeCursor(LocalDateTime orderTime, Long id) {
+        String cursor = orderTime + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void decodeCursor(OrdersCursorQueryDTO ordersCursorQueryDTO) {
+        String cursor = ordersCursorQueryDTO.getCursor();
+        if (cursor == null || cursor.isEmpty()) {
+            ordersCursorQueryDTO.setCursorOrderTime(null);
+            ordersCursorQueryDTO.setCursorId(null);
+            return;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+            ordersCursorQueryDTO.setCursorOrderTime(LocalDateTime.parse(parts[0]));
+            ordersCursorQueryDTO.setCursorId(Long.valueOf(parts[1]));
+        } catch (RuntimeException e) {
+            throw new OrderBusinessException(MessageConstant.PAGE_CURSOR_INVALID);
+        }
+    }
+
+    /**
+     * 将订单明细拼接为"菜品*数量;"格式的字符串
+     * @param orderDetailList
+     * @return
+     */
+    private String getOrderDishes(List<OrderDetail> orderDetailList) {
+        StringBuilder orderDishes = new StringBuilder("");
+        for (OrderDetail orderDetail : orderDetailList) {
+            orderDishes.append(orderDetail.getName())
+                    .append("*")
+                    .append(orderDetail.getNumber())
+                    .append(";");
+        }
+        return orderDishes.toString();
+    }
+
+    /**
+     * 批量查询订单明细，并按订单id分组
+     * @param orderVOList
+     * @return
+     */
+    private Map<Long, List<OrderDetail>> getOrderDetailMap(List<OrderVO> orderVOList) {
+        if (orderVOList == null || orderVOList.isEmpty()) {
+            return new HashMap<>();
+        }
+        List<Long> orderIds = orderVOList.stream().map(OrderVO::getId).collect(Collectors.toList());
+        return BatchLoader.grouping(orderDetailMapper::getByOrderIds, OrderDetail::getOrderId).loadMany(orderIds);
+    }
+
     /**
      * 各个状态的订单数量统计
      * @return
@@ -406,6 +609,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelTime(LocalDateTime.now());
 
         orderMapper.update(orders);
+        businessStatsService.recordOrderStatusChange(ordersDB, orders.getStatus());
     }
 
     /**
@@ -436,6 +640,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setCancelReason(ordersCancelDTO.getCancelReason());
         orders.setCancelTime(LocalDateTime.now());
         orderMapper.update(orders);
+        businessStatsService.recordOrderStatusChange(ordersDB, orders.getStatus());
     }
 
     /**
@@ -486,70 +691,7 @@ public class OrderServiceImpl implements OrderService {
         orders.setDeliveryTime(LocalDateTime.now());
 
         orderMapper.update(orders);
-    }
-
-    /**
-     * 检查客户的收货地址是否超出配送范围
-     * @param address
-     */
-    private void checkOutOfRange(String address) {
-        Map map = new HashMap();
-        map.put("address",shopAddress);
-        map.put("output","json");
-        map.put("ak",ak);
-
-        //获取店铺的经纬度坐标
-        String shopCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-
-        JSONObject jsonObject = JSON.parseObject(shopCoordinate);
-        if(!jsonObject.getString("status").equals("0")){
-            throw new OrderBusinessException("店铺地址解析失败");
-        }
-
-        //数据解析
-        JSONObject location = jsonObject.getJSONObject("result").getJSONObject("location");
-        String lat = location.getString("lat");
-        String lng = location.getString("lng");
-        //店铺经纬度坐标
-        String shopLngLat = lat + "," + lng;
-
-        map.put("address",address);
-        //获取用户收货地址的经纬度坐标
-        String userCoordinate = HttpClientUtil.doGet("https://api.map.baidu.com/geocoding/v3", map);
-
-        jsonObject = JSON.parseObject(userCoordinate);
-        if(!jsonObject.getString("status").equals("0")){
-            throw new OrderBusinessException("收货地址解析失败");
-        }
-
-        //数据解析
-        location = jsonObject.getJSONObject("result").getJSONObject("location");
-        lat = location.getString("lat");
-        lng = location.getString("lng");
-        //用户收货地址经纬度坐标
-        String userLngLat = lat + "," + lng;
-
-        map.put("origin",shopLngLat);
-        map.put("destination",userLngLat);
-        map.put("steps_info","0");
-
-        //路线规划
-        String json = HttpClientUtil.doGet("https://api.map.baidu.com/directionlite/v1/driving", map);
-
-        jsonObject = JSON.parseObject(json);
-        if(!jsonObject.getString("status").equals("0")){
-            throw new OrderBusinessException("配送路线规划失败");
-        }
-
-        //数据解析
-        JSONObject result = jsonObject.getJSONObject("result");
-        JSONArray jsonArray = (JSONArray) result.get("routes");
-        Integer distance = (Integer) ((JSONObject) jsonArray.get(0)).get("distance");
-
-        if(distance > 5000){
-            //配送距离超过5000米
-            throw new OrderBusinessException("超出配送范围");
-        }
+        businessStatsService.recordOrderStatusChange(ordersDB, orders.getStatus());
     }
 
     /**
@@ -572,6 +714,6 @@ public class OrderServiceImpl implements OrderService {
 
         //通过websocket向客户端浏览器推送消息
         String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        webSocketBroadcaster.broadcast(json);
     }
 }
@@ -0,0 +1,256 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSON;
+import com.sky.context.BaseContext;
+import com.sky.dto.ShoppingCartDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Redis哈希的购物车(默认)
+ * 每个用户两个哈希：数量哈希保存商品数量，商品哈希保存商品名称、价格等信息，字段为商品标识；
+ * 加减数量都是一次Lua脚本调用，原子完成且不访问MySQL，只在下单时读出购物车数据
+ */
+@Service
+@ConditionalOnProperty(name = "sky.shopping-cart.store", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisShoppingCartServiceImpl implements ShoppingCartService {
+
+    /**
+     * 商品已在购物车中时数量加一并返回新数量；
+     * 不在购物车中时，传入了商品信息则写入商品信息后数量加一，否则返回-1由调用方查询商品信息后重试
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then " +
+            "  if ARGV[3] == '' then return -1 end " +
+            "  redis.call('HSET', KEYS[2], ARGV[1], ARGV[3]) " +
+            "end " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[4]) " +
+            "redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+            "return n", Long.class);
+
+    /**
+     * 商品数量减一，减到0时同时删除数量和商品信息，返回剩余数量
+     */
+    private static final RedisScript<Long> SUB_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+            "local n = redis.call('HINCRBY', KEYS[1], ARGV[1], -1) " +
+            "if n <= 0 then " +
+            "  redis.call('HDEL', KEYS[1], ARGV[1]) " +
+            "  redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "else " +
+            "  redis.call('EXPIRE', KEYS[1], ARGV[2]) " +
+            "  redis.call('EXPIRE', KEYS[2], ARGV[2]) " +
+            "end " +
+            "return n", Long.class);
+
+    /**
+     * 扣除已下单的商品数量，ARGV为商品标识和数量交替排列，扣到0时同时删除数量和商品信息
+     */
+    private static final RedisScript<Long> CLEAN_ORDERED_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV, 2 do " +
+            "  if redis.call('HEXISTS', KEYS[1], ARGV[i]) == 1 then " +
+            "    local n = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1])) " +
+            "    if n <= 0 then " +
+            "      redis.call('HDEL', KEYS[1], ARGV[i]) " +
+            "      redis.call('HDEL', KEYS[2], ARGV[i]) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private DishMapper dishMapper;
+
+    @Autowired
+    private SetmealMapper setmealMapper;
+
+    //购物车的过期时间(天)
+    @Value("${sky.shopping-cart.ttl-days:7}")
+    private long ttlDays;
+
+    /**
+     * 添加购物车
+     * @param shoppingCartDTO
+     */
+    public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = itemField(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+
+        //商品已在购物车中，只需要将数量加一
+        Long number = increment(userId, field, "", 1);
+        if (number != null && number >= 0) {
+            return;
+        }
+
+        //商品第一次加入购物车，查询商品信息
+        ShoppingCart shoppingCart = ShoppingCart.builder()
+                .userId(userId)
+                .dishId(shoppingCartDTO.getDishId())
+                .setmealId(shoppingCartDTO.getSetmealId())
+                .dishFlavor(shoppingCartDTO.getDishFlavor())
+                .createTime(LocalDateTime.now())
+                .build();
+        //判断本次添加到购物车的是菜品还是套餐
+        Long dishId = shoppingCartDTO.getDishId();
+        if(dishId != null){
+            //本次添加到购物车是菜品
+            Dish dish = dishMapper.getById(dishId);
+            shoppingCart.setName(dish.getName());
+            shoppingCart.setImage(dish.getImage());
+            shoppingCart.setAmount(dish.getPrice());
+        }
+        else{
+            //本次添加到购物车是套餐
+            Setmeal setmeal = setmealMapper.getById(shoppingCartDTO.getSetmealId());
+            shoppingCart.setName(setmeal.getName());
+            shoppingCart.setImage(setmeal.getImage());
+            shoppingCart.setAmount(setmeal.getPrice());
+        }
+        increment(userId, field, JSON.toJSONString(shoppingCart), 1);
+    }
+
+    /**
+     * 查看购物车
+     * @return
+     */
+    public List<ShoppingCart> showShoppingCart() {
+        return listByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 清空购物车
+     */
+    public void cleanShoppingCart() {
+        cleanByUserId(BaseContext.getCurrentId());
+    }
+
+    /**
+     * 删除购物车中一个商品
+     * @param shoppingCartDTO
+     */
+    public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = itemField(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        stringRedisTemplate.execute(SUB_SCRIPT, Arrays.asList(numberKey(userId), itemKey(userId)),
+                field, String.valueOf(TimeUnit.DAYS.toSeconds(ttlDays)));
+    }
+
+    /**
+     * 查询指定用户的购物车数据
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        Map<Object, Object> numbers = stringRedisTemplate.opsForHash().entries(numberKey(userId));
+        Map<Object, Object> items = stringRedisTemplate.opsForHash().entries(itemKey(userId));
+
+        List<ShoppingCart> list = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : numbers.entrySet()) {
+            Object item = items.get(entry.getKey());
+            if (item == null) {
+                continue;
+            }
+            ShoppingCart shoppingCart = JSON.parseObject(item.toString(), ShoppingCart.class);
+            shoppingCart.setUserId(userId);
+            shoppingCart.setNumber(Integer.valueOf(entry.getValue().toString()));
+            list.add(shoppingCart);
+        }
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.naturalOrder())));
+        return list;
+    }
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    public void cleanByUserId(Long userId) {
+        stringRedisTemplate.delete(Arrays.asList(numberKey(userId), itemKey(userId)));
+    }
+
+    /**
+     * 扣除已下单的商品数量，一次Lua脚本调用原子完成
+     * @param userId
+     * @param orderedList
+     */
+    public void cleanOrdered(Long userId, List<ShoppingCart> orderedList) {
+        if (orderedList == null || orderedList.isEmpty()) {
+            return;
+        }
+        List<String> args = new ArrayList<>();
+        for (ShoppingCart shoppingCart : orderedList) {
+            args.add(itemField(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(String.valueOf(shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber()));
+        }
+        stringRedisTemplate.execute(CLEAN_ORDERED_SCRIPT, Arrays.asList(numberKey(userId), itemKey(userId)), args.toArray());
+    }
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            String field = itemField(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor());
+            int number = shoppingCart.getNumber() == null ? 1 : shoppingCart.getNumber();
+
+            ShoppingCart item = new ShoppingCart();
+            item.setName(shoppingCart.getName());
+            item.setImage(shoppingCart.getImage());
+            item.setDishId(shoppingCart.getDishId());
+            item.setSetmealId(shoppingCart.getSetmealId());
+            item.setDishFlavor(shoppingCart.getDishFlavor());
+            item.setAmount(shoppingCart.getAmount());
+            item.setCreateTime(shoppingCart.getCreateTime());
+            increment(shoppingCart.getUserId(), field, JSON.toJSONString(item), number);
+        }
+    }
+
+    private Long increment(Long userId, String field, String itemJson, int delta) {
+        return stringRedisTemplate.execute(ADD_SCRIPT, Arrays.asList(numberKey(userId), itemKey(userId)),
+                field, String.valueOf(TimeUnit.DAYS.toSeconds(ttlDays)), itemJson, String.valueOf(delta));
+    }
+
+    /**
+     * 购物车中商品的标识，菜品按口味区分
+     */
+    private String itemField(Long dishId, Long setmealId, String dishFlavor) {
+        if (dishId != null) {
+            return "d:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor);
+        }
+        return "s:" + setmealId;
+    }
+
+    //同一用户的两个key使用相同的hash tag，保证在Redis集群中位于同一个槽
+    private String numberKey(Long userId) {
+        return "sky:cart:{" + userId + "}:number";
+    }
+
+    private String itemKey(Long userId) {
+        return "sky:cart:{" + userId + "}:item";
+    }
+}
@@ -1,14 +1,23 @@
 package com.sky.service.impl;
 
+import com.sky.dto.DailyOrderStatDTO;
+import com.sky.dto.DailyUserStatDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.*;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
@@ -19,12 +28,16 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLEncoder;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -46,6 +59,23 @@ public class ReportServiceImpl implements ReportService {
     @Autowired
     private WorkspaceService workspaceService;
 
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    //SXSSF在内存中保留的行数，超出的行写入临时文件
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+    //模板中每日明细数据的起始行和最后一列
+    private static final int DETAIL_FIRST_ROW = 7;
+    private static final int DETAIL_LAST_CELL = 6;
+    //单个订单明细页最多写入的行数(xlsx单页上限为1048576行)
+    private static final int MAX_ORDER_ROWS_PER_SHEET = 1000000;
+    private static final String[] ORDER_SHEET_HEADERS = {"订单号", "下单时间", "订单状态", "支付状态", "实收金额", "收货人", "手机号", "地址"};
+    //订单状态 1待付款 2待接单 3已接单 4派送中 5已完成 6已取消
+    private static final String[] ORDER_STATUS_NAMES = {"", "待付款", "待接单", "已接单", "派送中", "已完成", "已取消"};
+    //支付状态 0未支付 1已支付 2退款
+    private static final String[] PAY_STATUS_NAMES = {"未支付", "已支付", "退款"};
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
     /**
      * 统计指定的时间区间的营业额数据
      * @param begin
@@ -54,37 +84,25 @@ public class ReportServiceImpl implements ReportService {
      */
     public TurnoverReportVO getTurnoverStatistics(LocalDate begin, LocalDate end) {
         //当前集合用于存放从begin到end范围内的每天的日期
-        ArrayList<LocalDate> dateList = new ArrayList<>();
-
-        dateList.add(begin);
-
-        while(!begin.equals(end)){
-            //日期计算，计算指定日期的后一天的对应的日期
-            begin = begin.plusDays(1);
-            dateList.add(begin);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        String dateString = StringUtils.join(dateList, ",");
+        //一次分组查询得到区间内每天的营业额
+        Map<LocalDate, DailyOrderStatDTO> orderStatMap = getDailyOrderStatMap(begin, end);
 
         List<Double> turnoverList = new ArrayList<>();
         for (LocalDate date : dateList) {
-            //查询date日期对应的营业额数据
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            HashMap map = new HashMap();
-            map.put("begin",beginTime);
-            map.put("end",endTime);
-            map.put("status", Orders.COMPLETED);
-            Double turnover = orderMapper.sumByMap(map);
-            turnover = turnover == null ? 0.0 : turnover;
+            //没有订单的日期营业额补0
+            DailyOrderStatDTO orderStat = orderStatMap.get(date);
+            Double turnover = orderStat == null || orderStat.getTurnover() == null ? 0.0 : orderStat.getTurnover();
             turnoverList.add(turnover);
         }
 
-        String turnoverString = StringUtils.join(turnoverList, ",");
-
         //封装返回结果
-        return TurnoverReportVO.builder().dateList(dateString).turnoverList(turnoverString).build();
+        return TurnoverReportVO
+                .builder()
+                .dateList(StringUtils.join(dateList, ","))
+                .turnoverList(StringUtils.join(turnoverList, ","))
+                .build();
     }
 
     /**
@@ -95,13 +113,20 @@ public class ReportServiceImpl implements ReportService {
      */
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
         //当前集合用于存放从begin到end范围内的每天的日期
-        ArrayList<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
-        while(!begin.equals(end)){
-            //日期计算，计算指定日期的后一天的对应的日期
-            begin = begin.plusDays(1);
-            dateList.add(begin);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        //查询begin之前的用户总数，作为累计的起点
+        HashMap map = new HashMap();
+        map.put("end", LocalDateTime.of(begin.minusDays(1), LocalTime.MAX));
+        Integer totalUser = userMapper.countByMap(map);
+        totalUser = totalUser == null ? 0 : totalUser;
+
+        //一次分组查询得到区间内每天的新增用户数
+        List<DailyUserStatDTO> userStats = userMapper.countGroupByDate(
+                LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
+        Map<LocalDate, Integer> newUserMap = userStats.stream()
+                .collect(Collectors.toMap(DailyUserStatDTO::getDate,
+                        stat -> stat.getNewUsers() == null ? 0 : stat.getNewUsers()));
 
         //存放每天的新增用户数量
         ArrayList<Integer> newUserList = new ArrayList<>();
@@ -109,20 +134,11 @@ public class ReportServiceImpl implements ReportService {
         ArrayList<Integer> totalUserList = new ArrayList<>();
 
         for (LocalDate date : dateList) {
-            //查询date日期对应的营业额数据
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            HashMap map = new HashMap();
-            map.put("end",endTime);
-            //总用户数量
-            Integer totalUser = userMapper.countByMap(map);
-            map.put("begin",beginTime);
-            //新增用户数量
-            Integer newUser = userMapper.countByMap(map);
+            Integer newUser = newUserMap.getOrDefault(date, 0);
+            totalUser += newUser;
 
-            totalUserList.add(totalUser);
             newUserList.add(newUser);
+            totalUserList.add(totalUser);
         }
 
         //封装结果数据
@@ -142,40 +158,24 @@ public class ReportServiceImpl implements ReportService {
      */
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end) {
         //当前集合用于存放从begin到end范围内的每天的日期
-        ArrayList<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
-        while(!begin.equals(end)){
-            //日期计算，计算指定日期的后一天的对应的日期
-            begin = begin.plusDays(1);
-            dateList.add(begin);
-        }
+        List<LocalDate> dateList = getDateList(begin, end);
+
+        //一次分组查询得到区间内每天的订单总数和有效订单数
+        Map<LocalDate, DailyOrderStatDTO> orderStatMap = getDailyOrderStatMap(begin, end);
 
         ArrayList<Integer> totalCountList = new ArrayList<>();
         ArrayList<Integer> validCountList = new ArrayList<>();
-        //遍历dateList集合，查询有效订单数和订单总数
         for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-
-            //查询每天的订单总数
-            HashMap map = new HashMap();
-            map.put("begin",beginTime);
-            map.put("end",endTime);
-            Integer totalCount = orderMapper.countByMap(map);
-
-            //查询每天的有效订单数
-            map.put("status",Orders.COMPLETED);
-            Integer validCount = orderMapper.countByMap(map);
-
-            //将数据放入集合
-            totalCountList.add(totalCount);
-            validCountList.add(validCount);
+            DailyOrderStatDTO orderStat = orderStatMap.get(date);
+            //没有订单的日期补0
+            totalCountList.add(orderStat == null ? 0 : orderStat.getOrderCount());
+            validCountList.add(orderStat == null ? 0 : orderStat.getValidOrderCount());
         }
 
         //计算时间区间内的订单总数量
-        Integer totalOrderCount = totalCountList.stream().reduce(Integer::sum).get();
+        Integer totalOrderCount = totalCountList.stream().reduce(0, Integer::sum);
         //计算时间区间内的有效订单总数量
-        Integer validOrderCount = validCountList.stream().reduce(Integer::sum).get();
+        Integer validOrderCount = validCountList.stream().reduce(0, Integer::sum);
         //计算订单完成率
         Double orderCompletionRate = 0.0;
         if(totalOrderCount != 0){
@@ -225,47 +225,183 @@ public class ReportServiceImpl implements ReportService {
     public void exportBusinessData(HttpServletResponse response) {
         LocalDate begin = LocalDate.now().minusDays(30);
         LocalDate end = LocalDate.now().minusDays(1);
+        exportBusinessData(begin, end, response);
+    }
+
+    /**
+     * 导出指定时间区间的运营数据报表
+     * 基于SXSSF流式写出，每日数据和订单明细按行写入磁盘临时文件，内存占用与时间区间长度无关
+     * @param begin
+     * @param end
+     * @param response
+     */
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
         //查询概览运营数据，提供给Excel模板文件
-        BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(begin,LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
+        BusinessDataVO businessData = workspaceService.getBusinessData(beginTime, endTime);
+        //一次查询得到区间内每天的明细数据
+        List<DailyBusinessStats> dailyStatsList = businessStatsService.listDaily(begin, end);
+
         InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("template\\运营数据报表模板.xlsx");
+        SXSSFWorkbook excel = null;
         try {
             //基于提供好的模板文件创建一个新的Excel表格对象
-            XSSFWorkbook excel = new XSSFWorkbook(inputStream);
+            XSSFWorkbook template = new XSSFWorkbook(inputStream);
             //获得Excel文件中的一个Sheet页
-            XSSFSheet sheet = excel.getSheet("Sheet1");
+            XSSFSheet templateSheet = template.getSheet("Sheet1");
 
-            sheet.getRow(1).getCell(1).setCellValue(begin + "至" + end);
+            templateSheet.getRow(1).getCell(1).setCellValue(begin + "至" + end);
             //获得第4行
-            XSSFRow row = sheet.getRow(3);
+            XSSFRow row = templateSheet.getRow(3);
             //获取单元格
             row.getCell(2).setCellValue(businessData.getTurnover());
             row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-            row.getCell(6).setCellValue(businessData.getNewUsers());
-            row = sheet.getRow(4);
+            row.getCell(6).setCellValue(businessData.getNewUsers() == null ? 0 : businessData.getNewUsers());
+            row = templateSheet.getRow(4);
             row.getCell(2).setCellValue(businessData.getValidOrderCount());
             row.getCell(4).setCellValue(businessData.getUnitPrice());
-            for (int i = 0; i < 30; i++) {
-                LocalDate date = begin.plusDays(i);
+
+            //记录模板中明细行的样式后删除预置的明细行，流式写出时只能追加新行
+            XSSFRow templateDetailRow = templateSheet.getRow(DETAIL_FIRST_ROW);
+            CellStyle[] detailStyles = new CellStyle[DETAIL_LAST_CELL + 1];
+            for (int i = 1; i <= DETAIL_LAST_CELL; i++) {
+                detailStyles[i] = templateDetailRow.getCell(i).getCellStyle();
+            }
+            for (int i = templateSheet.getLastRowNum(); i >= DETAIL_FIRST_ROW; i--) {
+                XSSFRow templateRow = templateSheet.getRow(i);
+                if (templateRow != null) {
+                    templateSheet.removeRow(templateRow);
+                }
+            }
+
+            excel = new SXSSFWorkbook(template, ROW_ACCESS_WINDOW_SIZE);
+            excel.setCompressTempFiles(true);
+
+            SXSSFSheet sheet = excel.getSheet("Sheet1");
+            int rowNum = DETAIL_FIRST_ROW;
+            for (DailyBusinessStats dailyStats : dailyStatsList) {
                 //准备明细数据
-                businessData = workspaceService.getBusinessData(LocalDateTime.of(date,LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-                row = sheet.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(businessData.getTurnover());
-                row.getCell(3).setCellValue(businessData.getValidOrderCount());
-                row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(businessData.getUnitPrice());
-                row.getCell(6).setCellValue(businessData.getNewUsers());
+                double turnover = dailyStats.getTurnover() == null ? 0.0 : dailyStats.getTurnover().doubleValue();
+                int validOrderCount = dailyStats.getValidOrderCount() == null ? 0 : dailyStats.getValidOrderCount();
+                int orderCount = dailyStats.getOrderCount() == null ? 0 : dailyStats.getOrderCount();
+                int newUsers = dailyStats.getNewUsers() == null ? 0 : dailyStats.getNewUsers();
+
+                Row detailRow = sheet.createRow(rowNum++);
+                setCellValue(detailRow, 1, detailStyles, dailyStats.getStatDate().toString());
+                setCellValue(detailRow, 2, detailStyles, turnover);
+                setCellValue(detailRow, 3, detailStyles, validOrderCount);
+                setCellValue(detailRow, 4, detailStyles, orderCount == 0 ? 0.0 : (double) validOrderCount / orderCount);
+                setCellValue(detailRow, 5, detailStyles, validOrderCount == 0 ? 0.0 : turnover / validOrderCount);
+                setCellValue(detailRow, 6, detailStyles, newUsers);
             }
-            //通过输出流将文件下载到客户端浏览器中
+
+            writeOrderSheets(excel, beginTime, endTime);
+
+            //通过输出流将文件分块写到客户端浏览器中
+            response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+            response.setHeader("Content-Disposition", "attachment;filename="
+                    + URLEncoder.encode("运营数据报表" + begin + "_" + end + ".xlsx", "UTF-8"));
             ServletOutputStream out = response.getOutputStream();
             excel.write(out);
             //关闭资源
             out.flush();
             out.close();
-            excel.close();
 
         }catch (IOException e){
-            e.printStackTrace();
+            log.error("导出运营数据报表失败", e);
+        }finally {
+            if (excel != null) {
+                //删除流式写出产生的临时文件
+                excel.dispose();
+            }
+        }
+    }
+
+    /**
+     * 流式读取订单数据写入订单明细页，超过单页行数上限时自动新建一页
+     * @param excel
+     * @param beginTime
+     * @param endTime
+     */
+    private void writeOrderSheets(SXSSFWorkbook excel, LocalDateTime beginTime, LocalDateTime endTime) {
+        int[] sheetIndex = {0};
+        SXSSFSheet[] sheet = {createOrderSheet(excel, sheetIndex[0])};
+        int[] rowNum = {1};
+
+        orderMapper.streamByOrderTime(beginTime, endTime, context -> {
+            if (rowNum[0] > MAX_ORDER_ROWS_PER_SHEET) {
+                sheet[0] = createOrderSheet(excel, ++sheetIndex[0]);
+                rowNum[0] = 1;
+            }
+            Orders orders = context.getResultObject();
+            Row row = sheet[0].createRow(rowNum[0]++);
+            row.createCell(0).setCellValue(orders.getNumber());
+            row.createCell(1).setCellValue(orders.getOrderTime().format(DATE_TIME_FORMATTER));
+            row.createCell(2).setCellValue(statusName(ORDER_STATUS_NAMES, orders.getStatus()));
+            row.createCell(3).setCellValue(statusName(PAY_STATUS_NAMES, orders.getPayStatus()));
+            row.createCell(4).setCellValue(orders.getAmount() == null ? 0.0 : orders.getAmount().doubleValue());
+            row.createCell(5).setCellValue(orders.getConsignee());
+            row.createCell(6).setCellValue(orders.getPhone());
+            row.createCell(7).setCellValue(orders.getAddress());
+        });
+    }
+
+    private SXSSFSheet createOrderSheet(SXSSFWorkbook excel, int index) {
+        SXSSFSheet sheet = excel.createSheet(index == 0 ? "订单明细" : "订单明细" + (index + 1));
+        Row header = sheet.createRow(0);
+        for (int i = 0; i < ORDER_SHEET_HEADERS.length; i++) {
+            header.createCell(i).setCellValue(ORDER_SHEET_HEADERS[i]);
+        }
+        return sheet;
+    }
+
+    private String statusName(String[] names, Integer status) {
+        if (status == null || status < 0 || status >= names.length) {
+            return "";
         }
+        return names[status];
+    }
+
+    private void setCellValue(Row row, int column, CellStyle[] styles, String value) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+        cell.setCellValue(value);
+    }
+
+    private void setCellValue(Row row, int column, CellStyle[] styles, double value) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+        cell.setCellValue(value);
+    }
+
+    /**
+     * 获取从begin到end范围内的每天的日期
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        List<LocalDate> dateList = new ArrayList<>();
+        dateList.add(begin);
+        while (begin.isBefore(end)) {
+            //日期计算，计算指定日期的后一天的对应的日期
+            begin = begin.plusDays(1);
+            dateList.add(begin);
+        }
+        return dateList;
+    }
+
+    /**
+     * 按天分组查询指定日期区间的订单统计数据，以日期为key
+     * @param begin
+     * @param end
+     * @return
+     */
+    private Map<LocalDate, DailyOrderStatDTO> getDailyOrderStatMap(LocalDate begin, LocalDate end) {
+        List<DailyOrderStatDTO> orderStats = orderMapper.sumGroupByDate(
+                LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
+        return orderStats.stream()
+                .collect(Collectors.toMap(DailyOrderStatDTO::getDate, Function.identity()));
     }
 }
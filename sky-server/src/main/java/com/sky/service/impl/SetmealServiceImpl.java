@@ -6,12 +6,10 @@ import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
 import com.sky.dto.SetmealPageQueryDTO;
-import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.SetmealDish;
 import com.sky.exception.DeletionNotAllowedException;
 import com.sky.exception.SetmealEnableFailedException;
-import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
@@ -21,6 +19,7 @@ import com.sky.vo.SetmealVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -43,9 +42,6 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private SetmealDishMapper setmealDishMapper;
 
-    @Autowired
-    private DishMapper dishMapper;
-
     /**
      * 新增套餐
      * @param setmealDTO
@@ -84,21 +80,23 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
+        //没有要删除的套餐，in ()在MySQL中是语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
         // 判断套餐是否能够删除--是否存在起售中的套餐??
-        for (Long id : ids) {
-            Setmeal setmeal = setmealMapper.getById(id);
-            if(setmeal.getStatus() == StatusConstant.ENABLE){
+        List<Setmeal> setmeals = setmealMapper.getByIds(ids);
+        for (Setmeal setmeal : setmeals) {
+            if(StatusConstant.ENABLE.equals(setmeal.getStatus())){
                 //当前套餐处于起售中,不能删除
                 throw new DeletionNotAllowedException(MessageConstant.SETMEAL_ON_SALE);
             }
         }
 
-        for (Long id : ids) {
-            //删除套餐表中的套餐数据
-            setmealMapper.deleteById(id);
-            //删除套餐关联的菜品数据
-            setmealDishMapper.deleteById(id);
-        }
+        //删除套餐表中的套餐数据
+        setmealMapper.deleteByIds(ids);
+        //删除套餐关联的菜品数据
+        setmealDishMapper.deleteBySetmealIds(ids);
     }
 
     /**
@@ -155,14 +153,9 @@ public class SetmealServiceImpl implements SetmealService {
     public void startOrStop(int status, Long id) {
         //如果启售套餐，则需要判断套餐内是否含有禁止售卖的菜品,若有，则不能更改售卖信息
         if(status == StatusConstant.ENABLE){
-            List<SetmealDish> setmealDishes = setmealDishMapper.getBySetmealId(id);
-            if(setmealDishes != null && setmealDishes.size() > 0){
-                for (SetmealDish setmealDish : setmealDishes) {
-                    Dish dish = dishMapper.getById(setmealDish.getDishId());
-                    if(dish.getStatus() == StatusConstant.DISABLE){
-                        throw new SetmealEnableFailedException(MessageConstant.SETMEAL_ENABLE_FAILED);
-                    }
-                }
+            Integer count = setmealDishMapper.countDisabledDishes(id);
+            if(count > 0){
+                throw new SetmealEnableFailedException(MessageConstant.SETMEAL_ENABLE_FAILED);
             }
         }
 
@@ -171,6 +164,30 @@ public class SetmealServiceImpl implements SetmealService {
         setmealMapper.update(setmeal);
     }
 
+    /**
+     * 批量启售禁售套餐
+     * @param status
+     * @param ids
+     */
+    @Transactional
+    public void startOrStopBatch(int status, List<Long> ids) {
+        //没有要修改的套餐，in ()在MySQL中是语法错误
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        //如果启售套餐，一次查询判断是否有套餐含有禁止售卖的菜品
+        if(status == StatusConstant.ENABLE){
+            List<Long> setmealIds = setmealDishMapper.getSetmealIdsWithDisabledDishes(ids);
+            if(setmealIds != null && setmealIds.size() > 0){
+                throw new SetmealEnableFailedException(MessageConstant.SETMEAL_ENABLE_FAILED);
+            }
+        }
+
+        //更新套餐的状态信息
+        Setmeal setmeal = Setmeal.builder().status(status).build();
+        setmealMapper.updateStatusByIds(setmeal, ids);
+    }
+
     /**
      * 条件查询
      * @param setmeal
@@ -181,6 +198,19 @@ public class SetmealServiceImpl implements SetmealService {
         return list;
     }
 
+    /**
+     * 根据分类id查询起售中的套餐，结果缓存在setmealCache中，并发未命中时只查询一次数据库
+     * @param categoryId
+     * @return
+     */
+    @Cacheable(cacheNames = "setmealCache",key = "#categoryId",sync = true)
+    public List<Setmeal> listEnabledByCategoryId(Long categoryId) {
+        Setmeal setmeal = new Setmeal();
+        setmeal.setCategoryId(categoryId);
+        setmeal.setStatus(StatusConstant.ENABLE);
+        return setmealMapper.list(setmeal);
+    }
+
     /**
      * 根据id查询菜品选项
      * @param id
@@ -12,18 +12,21 @@ import com.sky.service.ShoppingCartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 /**
  * @program: CqWorkspace
- * @description:
+ * @description: 基于MySQL的购物车，sky.shopping-cart.store=mysql时启用
  * @author: Maple
  * @create: 2023-07-13 17:19
  */
 @Service
+@ConditionalOnProperty(name = "sky.shopping-cart.store", havingValue = "mysql")
 @Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
@@ -127,4 +130,43 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
             }
         }
     }
+
+    /**
+     * 查询指定用户的购物车数据
+     * @param userId
+     * @return
+     */
+    public List<ShoppingCart> listByUserId(Long userId) {
+        return shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+    }
+
+    /**
+     * 清空指定用户的购物车
+     * @param userId
+     */
+    public void cleanByUserId(Long userId) {
+        shoppingCartMapper.deleteByUserId(userId);
+    }
+
+    /**
+     * 扣除已下单的商品数量，扣到0的购物车数据删除
+     * @param userId
+     * @param orderedList
+     */
+    @Transactional
+    public void cleanOrdered(Long userId, List<ShoppingCart> orderedList) {
+        if (orderedList == null || orderedList.isEmpty()) {
+            return;
+        }
+        shoppingCartMapper.subNumberBatch(userId, orderedList);
+        shoppingCartMapper.deleteEmptyByUserId(userId);
+    }
+
+    /**
+     * 批量加入购物车
+     * @param shoppingCartList
+     */
+    public void addBatch(List<ShoppingCart> shoppingCartList) {
+        shoppingCartMapper.insertBatch(shoppingCartList);
+    }
 }
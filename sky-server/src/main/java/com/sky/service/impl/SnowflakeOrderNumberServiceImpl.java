@@ -0,0 +1,199 @@
+package com.sky.service.impl;
+
+import com.sky.properties.OrderNumberProperties;
+import com.sky.service.OrderNumberService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake订单号
+ * 41位毫秒时间戳 + 10位节点编号 + 12位毫秒内序号，每个节点每毫秒最多4096个；
+ * 时间戳和序号合并保存在一个AtomicLong中用CAS更新，节点内不加锁；
+ * 同一毫秒内序号用完或时钟回拨时借用下一毫秒，不等待也不重复；
+ * 节点编号可以配置，未配置时从Redis租用，由独立线程定时续租，
+ * 租约到期前未能续租时不再使用该编号生成订单号，避免与重新租到该编号的节点重复
+ */
+@Service
+@Slf4j
+public class SnowflakeOrderNumberServiceImpl implements OrderNumberService {
+
+    //节点编号租约，value为本节点的标识
+    public static final String WORKER_KEY_PREFIX = "sky:order-number:worker:";
+
+    //下一个尝试租用的节点编号
+    public static final String WORKER_SEQ_KEY = "sky:order-number:worker-seq";
+
+    private static final int WORKER_ID_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER_ID = (1L << WORKER_ID_BITS) - 1;
+
+    //本地认定的租约比Redis中的租约提前到期的时间(毫秒)，抵消续租请求耗时和时钟误差
+    private static final long LEASE_SAFETY_MSEC = 5000;
+
+    //只续租/释放自己持有的编号
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('EXPIRE', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Autowired
+    private OrderNumberProperties orderNumberProperties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    //本节点标识，用于区分租约的持有者
+    private final String nodeId = UUID.randomUUID().toString();
+
+    //是否从Redis租用的节点编号
+    private boolean leased;
+
+    private volatile long workerId;
+
+    //节点编号在本地认定的租约到期时间(毫秒)，之后不再使用该编号
+    private volatile long leaseDeadline = Long.MAX_VALUE;
+
+    //高位为相对epoch的时间戳，低12位为序号
+    private final AtomicLong state = new AtomicLong();
+
+    //续租线程，不占用共享的定时任务线程
+    private ScheduledExecutorService leaseExecutor;
+
+    @PostConstruct
+    public void init() {
+        long configured = orderNumberProperties.getWorkerId();
+        if (configured > MAX_WORKER_ID) {
+            throw new IllegalStateException("订单号节点编号超出范围：" + configured);
+        }
+        if (configured >= 0) {
+            workerId = configured;
+        } else {
+            if (TimeUnit.SECONDS.toMillis(orderNumberProperties.getWorkerLeaseSeconds()) <= 2 * LEASE_SAFETY_MSEC) {
+                throw new IllegalStateException("订单号节点编号租约时间过短：" + orderNumberProperties.getWorkerLeaseSeconds());
+            }
+            leased = true;
+            leaseWorkerId();
+            long period = Math.max(1, TimeUnit.SECONDS.toMillis(orderNumberProperties.getWorkerLeaseSeconds()) / 3);
+            leaseExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "order-number-lease");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leaseExecutor.scheduleWithFixedDelay(this::renewQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+        log.info("订单号节点编号：{}", workerId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (leased) {
+            leaseExecutor.shutdownNow();
+            stringRedisTemplate.execute(RELEASE_SCRIPT,
+                    Collections.singletonList(WORKER_KEY_PREFIX + workerId), nodeId);
+        }
+    }
+
+    /**
+     * 生成新的订单号
+     * @return
+     */
+    public String nextNumber() {
+        if (System.currentTimeMillis() >= leaseDeadline) {
+            //续租线程没能按时续租，先续租或重新租用，失败时不生成订单号
+            ensureLease();
+        }
+        long next;
+        while (true) {
+            long current = state.get();
+            long now = System.currentTimeMillis() - orderNumberProperties.getEpoch();
+            //时间前进时序号归零，否则序号加1，序号溢出时自动进位到下一毫秒
+            next = now > (current >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : current + 1;
+            if (state.compareAndSet(current, next)) {
+                break;
+            }
+        }
+        long timestamp = next >>> SEQUENCE_BITS;
+        long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+        long id = (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+        return String.valueOf(id);
+    }
+
+    /**
+     * 本地租约已到期时续租，租约已丢失时重新租用
+     */
+    private synchronized void ensureLease() {
+        if (System.currentTimeMillis() < leaseDeadline) {
+            return;
+        }
+        renewWorkerId();
+    }
+
+    private void renewQuietly() {
+        try {
+            synchronized (this) {
+                renewWorkerId();
+            }
+        } catch (RuntimeException e) {
+            //租约到期前仍未续租成功时，生成订单号前会再次续租
+            log.warn("订单号节点编号续租失败：{}", workerId, e);
+        }
+    }
+
+    /**
+     * 续租当前节点编号，租约已丢失(例如Redis长时间不可用)时重新租用
+     */
+    private void renewWorkerId() {
+        long start = System.currentTimeMillis();
+        Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT,
+                Collections.singletonList(WORKER_KEY_PREFIX + workerId), nodeId,
+                String.valueOf(orderNumberProperties.getWorkerLeaseSeconds()));
+        if (renewed != null && renewed > 0) {
+            leaseDeadline = deadlineFrom(start);
+            return;
+        }
+        long old = workerId;
+        leaseWorkerId();
+        log.warn("订单号节点编号租约丢失，{} -> {}", old, workerId);
+    }
+
+    /**
+     * 从Redis租用一个空闲的节点编号，从全局计数器的位置开始依次尝试
+     */
+    private void leaseWorkerId() {
+        //租用期间不能继续使用旧编号
+        leaseDeadline = 0;
+        Long start = stringRedisTemplate.opsForValue().increment(WORKER_SEQ_KEY);
+        long first = start == null ? 0 : start;
+        for (long i = 0; i <= MAX_WORKER_ID; i++) {
+            long candidate = (first + i) & MAX_WORKER_ID;
+            long requestTime = System.currentTimeMillis();
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(WORKER_KEY_PREFIX + candidate, nodeId,
+                    orderNumberProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                workerId = candidate;
+                leaseDeadline = deadlineFrom(requestTime);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有空闲的订单号节点编号");
+    }
+
+    private long deadlineFrom(long requestTime) {
+        return requestTime + TimeUnit.SECONDS.toMillis(orderNumberProperties.getWorkerLeaseSeconds()) - LEASE_SAFETY_MSEC;
+    }
+}
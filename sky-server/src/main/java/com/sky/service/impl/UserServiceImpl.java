@@ -8,6 +8,7 @@ import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.UserService;
 import com.sky.utils.HttpClientUtil;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +38,9 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
     /**
      * 微信用户登录
      * @param userLoginDTO
@@ -58,6 +62,7 @@ public class UserServiceImpl implements UserService {
         if(user == null){
             user = User.builder().openid(openid).createTime(LocalDateTime.now()).build();
             userMapper.insert(user);
+            businessStatsService.recordUserRegistered(user);
         }
 
         //返回用户对象
@@ -1,11 +1,13 @@
 package com.sky.service.impl;
 
 import com.sky.constant.StatusConstant;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -14,6 +16,8 @@ import com.sky.vo.SetmealOverViewVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
@@ -31,22 +35,50 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     private DishMapper dishMapper;
     @Autowired
     private SetmealMapper setmealMapper;
+    @Autowired
+    private BusinessStatsService businessStatsService;
 
     /**
      * 根据时间段统计营业数据
+     * 已结束的整天从汇总表读取，只有当天等未结束的部分实时统计
      * @param begin
      * @param end
      * @return
      */
     public BusinessDataVO getBusinessData(LocalDateTime begin, LocalDateTime end) {
-        /**
-         * 营业额：当日已完成订单的总金额
-         * 有效订单：当日已完成订单的数量
-         * 订单完成率：有效订单数 / 总订单数
-         * 平均客单价：营业额 / 有效订单数
-         * 新增用户：当日新增用户的数量
-         */
+        //汇总表只覆盖到昨天，并且只能按整天统计
+        LocalDate closedEnd = end.toLocalTime().equals(LocalTime.MAX) ? end.toLocalDate() : end.toLocalDate().minusDays(1);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        if (closedEnd.isAfter(yesterday)) {
+            closedEnd = yesterday;
+        }
+
+        if (!begin.toLocalTime().equals(LocalTime.MIN) || closedEnd.isBefore(begin.toLocalDate())) {
+            return buildBusinessData(countLive(begin, end));
+        }
+
+        DailyBusinessStats total = DailyBusinessStats.builder()
+                .orderCount(0).validOrderCount(0).turnover(BigDecimal.ZERO).newUsers(0).build();
+        for (DailyBusinessStats stats : businessStatsService.listClosedDays(begin.toLocalDate(), closedEnd)) {
+            add(total, stats);
+        }
+
+        //剩余未结束的部分实时统计
+        LocalDateTime liveBegin = LocalDateTime.of(closedEnd.plusDays(1), LocalTime.MIN);
+        if (!liveBegin.isAfter(end)) {
+            add(total, countLive(liveBegin, end));
+        }
 
+        return buildBusinessData(total);
+    }
+
+    /**
+     * 实时统计指定时间段的订单和用户数据
+     * @param begin
+     * @param end
+     * @return
+     */
+    private DailyBusinessStats countLive(LocalDateTime begin, LocalDateTime end) {
         Map map = new HashMap();
         map.put("begin",begin);
         map.put("end",end);
@@ -62,6 +94,41 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         //有效订单数
         Integer validOrderCount = orderMapper.countByMap(map);
 
+        //新增用户数
+        Integer newUsers = userMapper.countByMap(map);
+
+        return DailyBusinessStats.builder()
+                .orderCount(totalOrderCount)
+                .validOrderCount(validOrderCount)
+                .turnover(BigDecimal.valueOf(turnover))
+                .newUsers(newUsers)
+                .build();
+    }
+
+    private void add(DailyBusinessStats total, DailyBusinessStats stats) {
+        total.setOrderCount(total.getOrderCount() + stats.getOrderCount());
+        total.setValidOrderCount(total.getValidOrderCount() + stats.getValidOrderCount());
+        total.setTurnover(total.getTurnover().add(stats.getTurnover()));
+        total.setNewUsers(total.getNewUsers() + stats.getNewUsers());
+    }
+
+    /**
+     * 根据汇总后的数据计算营业数据
+     * @param stats
+     * @return
+     */
+    private BusinessDataVO buildBusinessData(DailyBusinessStats stats) {
+        /**
+         * 营业额：当日已完成订单的总金额
+         * 有效订单：当日已完成订单的数量
+         * 订单完成率：有效订单数 / 总订单数
+         * 平均客单价：营业额 / 有效订单数
+         * 新增用户：当日新增用户的数量
+         */
+        Integer totalOrderCount = stats.getOrderCount();
+        Integer validOrderCount = stats.getValidOrderCount();
+        Double turnover = stats.getTurnover().doubleValue();
+
         Double unitPrice = 0.0;
 
         Double orderCompletionRate = 0.0;
@@ -72,15 +139,12 @@ public class WorkspaceServiceImpl implements WorkspaceService {
             unitPrice = turnover / validOrderCount;
         }
 
-        //新增用户数
-        Integer newUsers = userMapper.countByMap(map);
-
         return BusinessDataVO.builder()
                 .turnover(turnover)
                 .validOrderCount(validOrderCount)
                 .orderCompletionRate(orderCompletionRate)
                 .unitPrice(unitPrice)
-                .newUsers(newUsers)
+                .newUsers(stats.getNewUsers())
                 .build();
     }
 
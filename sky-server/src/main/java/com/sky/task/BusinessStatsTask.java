@@ -0,0 +1,31 @@
+package com.sky.task;
+
+import com.sky.service.BusinessStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * 营业数据汇总定时任务
+ */
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    /**
+     * 按订单表重建前一天的汇总数据，修正增量维护过程中可能产生的偏差
+     */
+    @Scheduled(cron = "0 30 1 * * ?") //每天凌晨一点半触发，在派送中订单处理之后
+    public void reconcileYesterday(){
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        log.info("重建前一天的营业数据汇总：{}", yesterday);
+
+        businessStatsService.rebuild(yesterday, yesterday);
+    }
+}
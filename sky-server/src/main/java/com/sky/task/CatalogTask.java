@@ -0,0 +1,24 @@
+package com.sky.task;
+
+import com.sky.service.CatalogService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 菜单快照同步定时任务
+ */
+@Component
+public class CatalogTask {
+
+    @Autowired
+    private CatalogService catalogService;
+
+    /**
+     * 每5秒比较一次全局版本号，同步其他节点对菜单的修改
+     */
+    @Scheduled(fixedDelay = 5 * 1000)
+    public void syncVersion() {
+        catalogService.syncVersion();
+    }
+}
@@ -2,13 +2,16 @@ package com.sky.task;
 
 import com.sky.entity.Orders;
 import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.OrderExpiryService;
+import com.sky.service.impl.OrderExpiryServiceImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
 
 /**
  * @program: CqWorkspace
@@ -20,28 +23,40 @@ import java.util.List;
 @Slf4j
 public class OrderTask {
 
+    //每批处理的订单数
+    private static final int CHUNK_SIZE = 500;
+
     @Autowired
     private OrderMapper orderMapper;
 
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+
     /**
-     * 处理超时订单
+     * 取消延迟队列中到期的订单，包括其他节点登记的订单
      */
-    @Scheduled(cron = "1 * * * * ?") //每分钟触发一次
+    @Scheduled(fixedDelay = 1000) //每秒触发一次，只访问Redis，有到期订单时才修改数据库
+    public void processExpiredOrder(){
+        orderExpiryService.expireDue();
+    }
+
+    /**
+     * 超时订单对账，兜底取消延迟队列登记或处理失败的订单
+     */
+    @Scheduled(cron = "1 0/10 * * * ?") //每10分钟触发一次
     public void processTimeoutOrder(){
         log.info("定时处理超时订单,{}", LocalDateTime.now());
 
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.PENDING_PAYMENT, time);
-
-        if(ordersList != null && ordersList.size() > 0){
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.CANCELLED);
-                orders.setCancelReason("订单超时，自动取消");
-                orders.setCancelTime(LocalDateTime.now());
-
-                orderMapper.update(orders);
-            }
-        }
+        LocalDateTime time = LocalDateTime.now().plusMinutes(-OrderExpiryServiceImpl.PAYMENT_TIMEOUT_MINUTES);
+        Orders orders = Orders.builder()
+                .status(Orders.CANCELLED)
+                .cancelReason("订单超时，自动取消")
+                .cancelTime(LocalDateTime.now())
+                .build();
+        updateStatusInChunks("超时订单", Orders.PENDING_PAYMENT, time, orders);
     }
 
     /**
@@ -52,14 +67,46 @@ public class OrderTask {
         log.info("定时处理处于派送中的订单 : {}",LocalDateTime.now());
 
         LocalDateTime time = LocalDateTime.now().plusHours(-1);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time);
-
-        if(ordersList != null && ordersList.size() > 0){
-            for (Orders orders : ordersList) {
-                orders.setStatus(Orders.COMPLETED);
-                orderMapper.update(orders);
+        Orders orders = Orders.builder()
+                .status(Orders.COMPLETED)
+                .build();
+        //修改前记录最早的下单时间，修改后按订单表重建涉及日期的营业数据汇总
+        LocalDateTime earliest = orderMapper.getMinOrderTimeByStatusAndOrderTimeLT(Orders.DELIVERY_IN_PROGRESS, time);
+        long rows = updateStatusInChunks("派送中订单", Orders.DELIVERY_IN_PROGRESS, time, orders);
+        if (rows > 0 && earliest != null) {
+            //当天的数据实时统计，次日由营业数据汇总任务重建，这里只重建已结束的日期
+            LocalDate end = time.toLocalDate().isBefore(LocalDate.now()) ? time.toLocalDate() : LocalDate.now().minusDays(1);
+            LocalDate begin = earliest.toLocalDate();
+            if (!begin.isAfter(end)) {
+                businessStatsService.rebuild(begin, end);
             }
         }
     }
 
+    /**
+     * 分批修改订单状态，不把订单加载到内存
+     * 每批是一条带原状态条件的update语句，按(status, order_time, id)索引顺序修改前CHUNK_SIZE条后立即提交，
+     * 行锁只覆盖本批订单且持有时间很短；修改行数小于CHUNK_SIZE时说明已处理完
+     * @param name 任务名称，用于日志
+     * @param fromStatus 原状态
+     * @param orderTime 只处理下单时间早于该时间的订单
+     * @param orders 新状态及取消原因等
+     * @return 修改的订单数
+     */
+    private long updateStatusInChunks(String name, Integer fromStatus, LocalDateTime orderTime, Orders orders) {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        long rows = 0;
+
+        int affected;
+        do {
+            affected = orderMapper.updateStatusByStatusAndOrderTimeLT(orders, fromStatus, orderTime, CHUNK_SIZE);
+            chunks++;
+            rows += affected;
+        } while (affected >= CHUNK_SIZE);
+
+        log.info("{}处理完成：{}批，修改{}条，耗时{}ms", name, chunks, rows, System.currentTimeMillis() - start);
+        return rows;
+    }
+
 }
@@ -19,4 +19,12 @@ public class WebSocketTask {
     public void sendMessageToClient() {
         webSocketServer.sendToAllClient("这是来自服务端的消息：" + DateTimeFormatter.ofPattern("HH:mm:ss").format(LocalDateTime.now()));
     }
+
+    /**
+     * 每分钟清理一次已经断开但未收到关闭事件的会话
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void removeClosedSessions() {
+        webSocketServer.removeClosedSessions();
+    }
 }
@@ -0,0 +1,110 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群广播
+ * 消息先发布到Redis频道，每个节点订阅后再推送给本机的WebSocket会话，多实例部署时所有商家都能收到提醒
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    //广播使用的Redis频道
+    public static final String CHANNEL = "sky:websocket:broadcast";
+
+    //当前节点标识
+    private static final String NODE_ID = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //最近投递过的消息id，用于去重
+    private Cache<String, Boolean> deliveredIds;
+
+    //消息从发布到本节点投递的耗时
+    private Timer deliveryTimer;
+
+    @PostConstruct
+    public void init() {
+        deliveredIds = Caffeine.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(5, TimeUnit.MINUTES)
+                .build();
+        deliveryTimer = meterRegistry.timer("sky.websocket.cluster.delivery", "node", NODE_ID);
+    }
+
+    /**
+     * 向集群中所有节点的客户端广播消息
+     * @param message
+     */
+    public void broadcast(String message) {
+        JSONObject envelope = new JSONObject();
+        envelope.put("id", UUID.randomUUID().toString());
+        envelope.put("node", NODE_ID);
+        envelope.put("timestamp", System.currentTimeMillis());
+        envelope.put("payload", message);
+
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, envelope.toJSONString());
+        } catch (RuntimeException e) {
+            //Redis不可用时至少保证本机的客户端能收到
+            log.warn("发布广播消息失败，仅推送本机客户端", e);
+            deliver(envelope);
+        }
+    }
+
+    /**
+     * 收到Redis频道消息后推送给本机客户端
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject envelope;
+        try {
+            envelope = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            log.warn("无法解析的广播消息", e);
+            return;
+        }
+        deliver(envelope);
+    }
+
+    private void deliver(JSONObject envelope) {
+        String id = envelope.getString("id");
+        if (id == null || deliveredIds.asMap().putIfAbsent(id, Boolean.TRUE) != null) {
+            //重复的消息不再推送
+            return;
+        }
+
+        webSocketServer.sendToAllClient(envelope.getString("payload"));
+
+        Long timestamp = envelope.getLong("timestamp");
+        if (timestamp != null) {
+            deliveryTimer.record(Math.max(0, System.currentTimeMillis() - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -1,33 +1,53 @@
 package com.sky.websocket;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.io.IOException;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * WebSocket服务
+ * 群发时消息只进入每个会话的发送队列，由异步发送逐条写出，不阻塞调用线程；
+ * 队列写满的慢客户端会被断开，避免一个卡住的浏览器拖慢支付回调等业务线程
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
+    //每个会话最多缓存的待发送消息数
+    private static final int OUTBOUND_QUEUE_CAPACITY = 64;
+
+    //单条消息异步发送的超时时间(毫秒)
+    private static final long SEND_TIMEOUT_MSEC = 10 * 1000;
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final Map<String, SessionOutbox> sessionMap = new ConcurrentHashMap<>();
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端：{}建立连接", sid);
+        session.getAsyncRemote().setSendTimeout(SEND_TIMEOUT_MSEC);
+        SessionOutbox previous = sessionMap.put(sid, new SessionOutbox(sid, session));
+        if (previous != null) {
+            //同一客户端重复连接，关闭旧的会话
+            previous.close(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced");
+        }
     }
 
     /**
@@ -37,7 +57,7 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
     }
 
     /**
@@ -46,24 +66,130 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        remove(sid, session);
     }
 
     /**
-     * 群发
+     * 连接异常调用的方法
+     *
+     * @param sid
+     * @param error
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable error) {
+        log.warn("连接异常:{}", sid, error);
+        remove(sid, session);
+    }
+
+    /**
+     * 群发，只负责将消息放入各会话的发送队列
      *
      * @param message
      */
     public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
+        for (SessionOutbox outbox : sessionMap.values()) {
+            outbox.enqueue(message);
+        }
+    }
+
+    /**
+     * 清理已经关闭但未收到关闭事件的会话
+     */
+    public void removeClosedSessions() {
+        sessionMap.values().removeIf(outbox -> !outbox.isOpen());
+    }
+
+    /**
+     * 获取当前连接的会话数
+     * @return
+     */
+    public int getSessionCount() {
+        return sessionMap.size();
+    }
+
+    /**
+     * 只有sid当前对应的仍是该会话时才移除，避免误删重连后的新会话
+     * @param sid
+     * @param session
+     */
+    private static void remove(String sid, Session session) {
+        sessionMap.computeIfPresent(sid, (key, outbox) -> outbox.session == session ? null : outbox);
+    }
+
+    /**
+     * 会话及其待发送消息队列，同一会话同时只有一条消息在发送
+     */
+    private static class SessionOutbox {
+        private final String sid;
+        private final Session session;
+        private final Queue<String> queue = new ArrayBlockingQueue<>(OUTBOUND_QUEUE_CAPACITY);
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+
+        SessionOutbox(String sid, Session session) {
+            this.sid = sid;
+            this.session = session;
+        }
+
+        boolean isOpen() {
+            return session.isOpen();
+        }
+
+        void enqueue(String message) {
+            if (!session.isOpen()) {
+                remove(sid, session);
+                return;
+            }
+            if (!queue.offer(message)) {
+                //发送队列已满，说明客户端消费过慢，断开连接让其重连
+                log.warn("客户端：{}发送队列已满，断开连接", sid);
+                close(CloseReason.CloseCodes.TRY_AGAIN_LATER, "outbound queue full");
+                return;
+            }
+            sendNext();
+        }
+
+        private void sendNext() {
+            if (!sending.compareAndSet(false, true)) {
+                //已有消息在发送，完成后会继续发送队列中的消息
+                return;
+            }
+            String message = queue.poll();
+            if (message == null) {
+                sending.set(false);
+                //释放发送标记前可能有新消息入队
+                if (!queue.isEmpty()) {
+                    sendNext();
+                }
+                return;
+            }
+            try {
+                session.getAsyncRemote().sendText(message, result -> {
+                    sending.set(false);
+                    if (!result.isOK()) {
+                        log.warn("向客户端：{}发送消息失败，断开连接", sid, result.getException());
+                        close(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed");
+                        return;
+                    }
+                    sendNext();
+                });
+            } catch (RuntimeException e) {
+                sending.set(false);
+                log.warn("向客户端：{}发送消息失败，断开连接", sid, e);
+                close(CloseReason.CloseCodes.UNEXPECTED_CONDITION, "send failed");
+            }
+        }
+
+        void close(CloseReason.CloseCode code, String reason) {
+            remove(sid, session);
+            queue.clear();
             try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
+                if (session.isOpen()) {
+                    session.close(new CloseReason(code, reason));
+                }
+            } catch (IOException e) {
+                log.warn("关闭客户端：{}连接失败", sid, e);
             }
         }
     }
@@ -0,0 +1,10 @@
+-- 每日营业数据汇总表，由订单状态流转和用户注册增量维护，已结束的日期直接从该表读取
+CREATE TABLE IF NOT EXISTS `daily_business_stats` (
+  `stat_date` date NOT NULL COMMENT '统计日期',
+  `order_count` int NOT NULL DEFAULT '0' COMMENT '订单总数',
+  `valid_order_count` int NOT NULL DEFAULT '0' COMMENT '有效订单数',
+  `turnover` decimal(12,2) NOT NULL DEFAULT '0.00' COMMENT '营业额',
+  `new_users` int NOT NULL DEFAULT '0' COMMENT '新增用户数',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`stat_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COMMENT='每日营业数据汇总';
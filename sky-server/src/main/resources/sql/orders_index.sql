@@ -0,0 +1,4 @@
+-- 订单游标分页使用的联合索引，按(order_time, id)倒序定位，避免大偏移量扫描
+ALTER TABLE `orders` ADD INDEX `idx_order_time_id` (`order_time`, `id`);
+ALTER TABLE `orders` ADD INDEX `idx_user_order_time_id` (`user_id`, `order_time`, `id`);
+ALTER TABLE `orders` ADD INDEX `idx_status_order_time_id` (`status`, `order_time`, `id`);
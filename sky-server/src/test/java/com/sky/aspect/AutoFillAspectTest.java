@@ -0,0 +1,141 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.ShoppingCart;
+import com.sky.enumeration.OperationType;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.ShoppingCartMapper;
+import org.aspectj.lang.JoinPoint;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 公共字段自动填充：单个实体、集合参数、缺少setter的类
+ */
+class AutoFillAspectTest {
+
+    private final AutoFillAspect aspect = new AutoFillAspect();
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(7L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void insertFillsAllAuditFields() throws Exception {
+        Dish dish = new Dish();
+
+        aspect.autoFill(joinPoint(dish), autoFill("insert"));
+
+        assertNotNull(dish.getCreateTime());
+        assertEquals(7L, dish.getCreateUser());
+        assertSame(dish.getCreateTime(), dish.getUpdateTime());
+        assertEquals(7L, dish.getUpdateUser());
+    }
+
+    @Test
+    void updateOnlyFillsUpdateFields() throws Exception {
+        LocalDateTime createTime = LocalDateTime.of(2026, 1, 1, 0, 0);
+        Dish dish = new Dish();
+        dish.setCreateTime(createTime);
+        dish.setCreateUser(1L);
+
+        aspect.autoFill(joinPoint(dish), autoFill("update"));
+
+        assertEquals(createTime, dish.getCreateTime());
+        assertEquals(1L, dish.getCreateUser());
+        assertNotNull(dish.getUpdateTime());
+        assertEquals(7L, dish.getUpdateUser());
+    }
+
+    @Test
+    void collectionArgumentFillsEveryElement() throws Exception {
+        Dish first = new Dish();
+        Dish second = new Dish();
+
+        aspect.autoFill(joinPoint(Arrays.asList(first, null, second)), autoFill("insert"));
+
+        for (Dish dish : Arrays.asList(first, second)) {
+            assertNotNull(dish.getCreateTime());
+            assertEquals(7L, dish.getCreateUser());
+            assertNotNull(dish.getUpdateTime());
+            assertEquals(7L, dish.getUpdateUser());
+        }
+    }
+
+    @Test
+    void classWithoutSettersIsSkipped() throws Exception {
+        DishFlavor flavor = DishFlavor.builder().name("辣度").value("微辣").build();
+
+        assertDoesNotThrow(() -> aspect.autoFill(joinPoint(flavor), autoFill("insert")));
+        assertEquals("微辣", flavor.getValue());
+    }
+
+    @Test
+    void classWithSomeSettersGetsOnlyThose() throws Exception {
+        ShoppingCart cart = new ShoppingCart();
+
+        assertDoesNotThrow(() -> aspect.autoFill(joinPoint(cart), autoFill("insert")));
+        assertNotNull(cart.getCreateTime());
+    }
+
+    @Test
+    void missingArgumentIsIgnored() throws Exception {
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{null});
+
+        assertDoesNotThrow(() -> aspect.autoFill(joinPoint, autoFill("insert")));
+    }
+
+    @Test
+    void existingBatchInsertsAreNotAnnotated() throws Exception {
+        //集合填充只对标注的方法生效，现有批量插入的行为保持不变
+        assertNull(DishFlavorMapper.class.getMethod("insertBatch", List.class).getAnnotation(AutoFill.class));
+        assertNull(SetmealDishMapper.class.getMethod("insertBatch", List.class).getAnnotation(AutoFill.class));
+        assertNull(OrderDetailMapper.class.getMethod("insertBatch", List.class).getAnnotation(AutoFill.class));
+        assertNull(ShoppingCartMapper.class.getMethod("insertBatch", List.class).getAnnotation(AutoFill.class));
+    }
+
+    private static JoinPoint joinPoint(Object arg) {
+        JoinPoint joinPoint = mock(JoinPoint.class);
+        when(joinPoint.getArgs()).thenReturn(new Object[]{arg});
+        return joinPoint;
+    }
+
+    private static AutoFill autoFill(String methodName) throws NoSuchMethodException {
+        Method method = Annotated.class.getDeclaredMethod(methodName);
+        return method.getAnnotation(AutoFill.class);
+    }
+
+    private interface Annotated {
+        @AutoFill(OperationType.INSERT)
+        void insert();
+
+        @AutoFill(OperationType.UPDATE)
+        void update();
+    }
+}
@@ -0,0 +1,195 @@
+package com.sky.cache;
+
+import com.sky.properties.CacheStampedeProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 击穿保护：并发未命中只重建一次、分布式锁的加锁和释放、概率提前刷新
+ */
+class StampedeGuardTest {
+
+    private CacheStampedeProperties properties;
+    private StringRedisTemplate stringRedisTemplate;
+    private ValueOperations<String, String> valueOperations;
+    private StampedeGuard stampedeGuard;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new CacheStampedeProperties();
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        stampedeGuard = new StampedeGuard();
+        ReflectionTestUtils.setField(stampedeGuard, "cacheStampedeProperties", properties);
+        ReflectionTestUtils.setField(stampedeGuard, "stringRedisTemplate", stringRedisTemplate);
+        stampedeGuard.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stampedeGuard.destroy();
+    }
+
+    @Test
+    void parallelMissesCallLoaderOnce() throws Exception {
+        int threads = 16;
+        AtomicReference<String> cache = new AtomicReference<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return stampedeGuard.load("dish_1", cache::get, () -> {
+                        loads.incrementAndGet();
+                        loaderStarted.countDown();
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        cache.set("value");
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+            //让其他线程都进入等待后再放行
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void loaderFailureIsRethrownAndNotRemembered() {
+        RuntimeException failure = new IllegalStateException("db down");
+        assertSame(failure, assertThrows(IllegalStateException.class,
+                () -> stampedeGuard.load("dish_1", () -> null, () -> {
+                    throw failure;
+                })));
+
+        assertEquals("value", stampedeGuard.load("dish_1", () -> null, () -> "value"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisLockIsSetWithExpiryAndReleasedByToken() {
+        properties.setLockMode("redis");
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        assertEquals("value", stampedeGuard.load("dish_1", () -> null, () -> "value"));
+
+        ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+        verify(valueOperations).setIfAbsent(eq("lock:dish_1"), token.capture(),
+                eq(properties.getLockTimeoutMsec()), eq(TimeUnit.MILLISECONDS));
+        verify(stringRedisTemplate).execute(any(RedisScript.class),
+                eq(Collections.singletonList("lock:dish_1")), eq(token.getValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void nodeWithoutLockWaitsForCacheInsteadOfLoading() {
+        properties.setLockMode("redis");
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+        AtomicInteger reads = new AtomicInteger();
+        AtomicInteger loads = new AtomicInteger();
+
+        //第一次读未命中，之后其他节点写入了缓存
+        String value = stampedeGuard.load("dish_1", () -> reads.incrementAndGet() > 2 ? "other" : null, () -> {
+            loads.incrementAndGet();
+            return "mine";
+        });
+
+        assertEquals("other", value);
+        assertEquals(0, loads.get());
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList(), any());
+    }
+
+    @Test
+    void nodeWithoutLockLoadsAfterWaitTimeout() {
+        properties.setLockMode("redis");
+        properties.setWaitTimeoutMsec(120);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+        assertEquals("mine", stampedeGuard.load("dish_1", () -> null, () -> "mine"));
+    }
+
+    @Test
+    void earlyRefreshDisabledWhenBetaIsZero() {
+        properties.setEarlyRefreshBeta(0);
+
+        assertFalse(stampedeGuard.shouldRefreshEarly(new CachedValue<>("v", 1000, System.currentTimeMillis())));
+    }
+
+    @Test
+    void earlyRefreshProbabilityGrowsTowardsExpiry() {
+        long now = System.currentTimeMillis();
+        //重建耗时1秒，10毫秒后过期：几乎总是提前刷新
+        CachedValue<String> nearExpiry = new CachedValue<>("v", 1000, now + 10);
+        //重建耗时1毫秒，1小时后过期：不应提前刷新
+        CachedValue<String> farFromExpiry = new CachedValue<>("v", 1, now + 3_600_000);
+        CachedValue<String> expired = new CachedValue<>("v", 1, now - 1);
+
+        int nearCount = 0;
+        int farCount = 0;
+        int expiredCount = 0;
+        int trials = 1000;
+        for (int i = 0; i < trials; i++) {
+            nearCount += stampedeGuard.shouldRefreshEarly(nearExpiry) ? 1 : 0;
+            farCount += stampedeGuard.shouldRefreshEarly(farFromExpiry) ? 1 : 0;
+            expiredCount += stampedeGuard.shouldRefreshEarly(expired) ? 1 : 0;
+        }
+
+        assertTrue(nearCount > trials * 9 / 10, "near expiry refreshed " + nearCount);
+        assertEquals(0, farCount);
+        assertEquals(trials, expiredCount);
+    }
+}
@@ -0,0 +1,162 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.LocalCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 两级缓存的跨节点失效和回填保护
+ */
+class TwoLevelCacheTest {
+
+    private static final String CACHE_NAME = "setmealCache";
+
+    private ConcurrentMapCache redisCache;
+    private StringRedisTemplate stringRedisTemplate;
+    private TwoLevelCacheManager cacheManager;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        redisCache = spy(new ConcurrentMapCache(CACHE_NAME));
+        RedisCacheManager redisCacheManager = mock(RedisCacheManager.class);
+        when(redisCacheManager.getCache(CACHE_NAME)).thenReturn(redisCache);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+
+        cacheManager = new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, new StampedeGuard(),
+                new LocalCacheProperties(), new SimpleMeterRegistry());
+        cache = (TwoLevelCache) cacheManager.getCache(CACHE_NAME);
+    }
+
+    @Test
+    void localHitDoesNotReadRedis() {
+        redisCache.put(1L, "value");
+
+        assertEquals("value", cache.get(1L).get());
+        assertEquals("value", cache.get(1L).get());
+
+        verify(redisCache, times(1)).get(1L);
+    }
+
+    @Test
+    void invalidationFromOtherNodeEvictsLocalCopy() {
+        redisCache.put(1L, "old");
+        cache.get(1L);
+        //其他节点更新了Redis并发出失效通知
+        redisCache.put(1L, "new");
+
+        cacheManager.onMessage(message("other-node", CACHE_NAME, "1"), null);
+
+        assertEquals("new", cache.get(1L).get());
+    }
+
+    @Test
+    void clearFromOtherNodeEvictsAllLocalCopies() {
+        redisCache.put(1L, "a");
+        redisCache.put(2L, "b");
+        cache.get(1L);
+        cache.get(2L);
+        redisCache.put(1L, "a2");
+        redisCache.put(2L, "b2");
+
+        cacheManager.onMessage(message("other-node", CACHE_NAME, null), null);
+
+        assertEquals("a2", cache.get(1L).get());
+        assertEquals("b2", cache.get(2L).get());
+    }
+
+    @Test
+    void ownInvalidationIsIgnored() {
+        redisCache.put(1L, "value");
+        cache.get(1L);
+
+        cacheManager.onMessage(message(nodeId(), CACHE_NAME, "1"), null);
+        cache.get(1L);
+
+        verify(redisCache, times(1)).get(1L);
+    }
+
+    @Test
+    void evictPublishesInvalidation() {
+        redisCache.put(1L, "value");
+        cache.get(1L);
+
+        cache.evict(1L);
+
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(TwoLevelCacheManager.CHANNEL), body.capture());
+        JSONObject message = JSON.parseObject(body.getValue());
+        assertEquals(nodeId(), message.getString("node"));
+        assertEquals(CACHE_NAME, message.getString("cache"));
+        assertEquals("1", message.getString("key"));
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void invalidationDuringRedisReadSkipsLocalPopulate() {
+        redisCache.put(1L, "old");
+        //读Redis的过程中收到失效通知，读到的值不能留在本地
+        doAnswer(invocation -> {
+            Object value = invocation.callRealMethod();
+            cacheManager.onMessage(message("other-node", CACHE_NAME, "1"), null);
+            return value;
+        }).when(redisCache).get(1L);
+
+        assertEquals("old", cache.get(1L).get());
+        cache.get(1L);
+
+        verify(redisCache, times(2)).get(1L);
+    }
+
+    @Test
+    void unknownCacheAndBadMessageAreIgnored() {
+        redisCache.put(1L, "value");
+        cache.get(1L);
+
+        cacheManager.onMessage(message("other-node", "unknownCache", "1"), null);
+        cacheManager.onMessage(new DefaultMessage(bytes(TwoLevelCacheManager.CHANNEL), bytes("not json")), null);
+        cache.get(1L);
+
+        verify(redisCache, times(1)).get(1L);
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    private static String nodeId() {
+        return (String) ReflectionTestUtils.getField(TwoLevelCacheManager.class, "NODE_ID");
+    }
+
+    private static DefaultMessage message(String node, String cacheName, String key) {
+        JSONObject body = new JSONObject();
+        body.put("node", node);
+        body.put("cache", cacheName);
+        body.put("key", key);
+        return new DefaultMessage(bytes(TwoLevelCacheManager.CHANNEL), bytes(body.toJSONString()));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,103 @@
+package com.sky.interceptor;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 令牌校验缓存：缓存命中时仍然检查过期时间，校验失败的令牌进入短期的失败缓存
+ */
+class JwtTokenVerifierTest {
+
+    private static final String SECRET = "itcast";
+
+    private JwtTokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        verifier = new JwtTokenVerifier(SECRET, JwtClaimsConstant.EMP_ID, new JwtProperties());
+    }
+
+    @Test
+    void validTokenIsVerifiedAndCached() {
+        String token = token(SECRET, 60_000, 5L);
+
+        assertEquals(5L, verifier.verify(token));
+        assertEquals(5L, verifier.verify(token));
+        assertEquals(1, verifiedTokens().estimatedSize());
+    }
+
+    @Test
+    void expiryIsHonouredOnCacheHit() throws InterruptedException {
+        //令牌本身的过期时间远早于缓存时间(默认600秒)
+        String token = token(SECRET, 1200, 5L);
+        assertEquals(5L, verifier.verify(token));
+        assertEquals(1, verifiedTokens().estimatedSize());
+
+        //jwt的过期时间精确到秒，等待足够长保证已过期
+        Thread.sleep(2200);
+
+        assertNull(verifier.verify(token));
+        assertEquals(0, verifiedTokens().estimatedSize());
+        assertEquals(1, invalidTokens().estimatedSize());
+    }
+
+    @Test
+    void badSignatureIsNegativelyCached() {
+        String token = token("other-secret", 60_000, 5L);
+
+        assertNull(verifier.verify(token));
+        assertNull(verifier.verify(token));
+
+        assertEquals(0, verifiedTokens().estimatedSize());
+        assertEquals(1, invalidTokens().estimatedSize());
+    }
+
+    @Test
+    void malformedTokenIsRejectedWithoutThrowing() {
+        assertNull(verifier.verify("not.a.jwt"));
+        assertNull(verifier.verify(null));
+        assertNull(verifier.verify(""));
+        assertEquals(1, invalidTokens().estimatedSize());
+    }
+
+    @Test
+    void tokenWithoutIdOrWithNonNumericIdIsRejected() {
+        String noId = JwtUtil.createJWT(SECRET, 60_000, new HashMap<>());
+        String textId = token(SECRET, 60_000, "abc");
+
+        assertNull(verifier.verify(noId));
+        assertNull(verifier.verify(textId));
+        assertEquals(2, invalidTokens().estimatedSize());
+    }
+
+    private static String token(String secret, long ttlMillis, Object id) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, id);
+        return JwtUtil.createJWT(secret, ttlMillis, claims);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, ?> verifiedTokens() {
+        Cache<String, ?> cache = (Cache<String, ?>) ReflectionTestUtils.getField(verifier, "verifiedTokens");
+        cache.cleanUp();
+        return cache;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, ?> invalidTokens() {
+        Cache<String, ?> cache = (Cache<String, ?>) ReflectionTestUtils.getField(verifier, "invalidTokens");
+        cache.cleanUp();
+        return cache;
+    }
+}
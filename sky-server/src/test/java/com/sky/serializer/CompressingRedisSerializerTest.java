@@ -0,0 +1,107 @@
+package com.sky.serializer;
+
+import com.sky.config.RedisConfiguration;
+import com.sky.entity.DishFlavor;
+import com.sky.properties.RedisSerializerProperties;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressingRedisSerializerTest {
+
+    private static final int THRESHOLD = 1024;
+
+    private final RedisSerializer<Object> serializer = newSerializer(THRESHOLD);
+
+    @Test
+    void smallValueIsTypedJsonWithoutCompression() {
+        DishVO dish = dish(1L, "宫保鸡丁");
+
+        byte[] bytes = serializer.serialize(dish);
+
+        assertTrue(bytes.length <= THRESHOLD);
+        assertEquals('{', bytes[0]);
+        assertTrue(new String(bytes, StandardCharsets.UTF_8).contains("\"@class\":\"com.sky.vo.DishVO\""));
+        assertEquals(dish, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void largeValueIsGzippedAndRoundTrips() {
+        List<DishVO> dishes = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            dishes.add(dish(i, "菜品" + i));
+        }
+
+        byte[] bytes = serializer.serialize(dishes);
+        byte[] uncompressed = newSerializer(0).serialize(dishes);
+
+        assertEquals((byte) 0x1f, bytes[0]);
+        assertEquals((byte) 0x8b, bytes[1]);
+        assertTrue(bytes.length < uncompressed.length);
+        assertEquals(dishes, serializer.deserialize(bytes));
+    }
+
+    @Test
+    void valueAtThresholdIsNotCompressed() {
+        RedisSerializer<Object> plain = newSerializer(0);
+        byte[] json = plain.serialize(dish(1L, "宫保鸡丁"));
+
+        byte[] bytes = newSerializer(json.length).serialize(dish(1L, "宫保鸡丁"));
+
+        assertArrayEquals(json, bytes);
+    }
+
+    @Test
+    void legacyJdkSerializedValueIsTreatedAsMiss() {
+        byte[] legacy = new JdkSerializationRedisSerializer().serialize(new ArrayList<>(Collections.singletonList("x")));
+
+        assertNull(serializer.deserialize(legacy));
+    }
+
+    @Test
+    void typeOutsideAllowListIsRejected() {
+        byte[] bytes = "{\"@class\":\"java.lang.ProcessBuilder\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    private static RedisSerializer<Object> newSerializer(int threshold) {
+        RedisSerializerProperties properties = new RedisSerializerProperties();
+        properties.setCompressThreshold(threshold);
+        return new RedisConfiguration().redisValueSerializer(properties);
+    }
+
+    private static DishVO dish(Long id, String name) {
+        DishFlavor flavor = new DishFlavor();
+        flavor.setDishId(id);
+        flavor.setName("辣度");
+        flavor.setValue("[\"不辣\",\"微辣\",\"中辣\",\"重辣\"]");
+
+        DishVO dish = new DishVO();
+        dish.setId(id);
+        dish.setName(name);
+        dish.setCategoryId(10L);
+        dish.setPrice(new BigDecimal("26.50"));
+        dish.setImage("https://example.com/dish/" + id + ".png");
+        dish.setDescription("这是一道用来测试序列化和压缩的菜品描述，内容足够长以便多个菜品的列表超过压缩阈值");
+        dish.setStatus(1);
+        dish.setUpdateTime(LocalDateTime.of(2023, 7, 1, 12, 30, 15));
+        dish.setFlavors(new ArrayList<>(Collections.singletonList(flavor)));
+        return dish;
+    }
+}
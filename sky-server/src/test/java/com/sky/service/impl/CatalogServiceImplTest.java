@@ -0,0 +1,89 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Category;
+import com.sky.entity.Dish;
+import com.sky.entity.DishFlavor;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.CategoryMapper;
+import com.sky.mapper.DishFlavorMapper;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealDishMapper;
+import com.sky.mapper.SetmealMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CatalogServiceImplTest {
+
+    private CatalogServiceImpl service;
+    private CategoryMapper categoryMapper;
+    private DishMapper dishMapper;
+    private DishFlavorMapper dishFlavorMapper;
+    private SetmealMapper setmealMapper;
+    private SetmealDishMapper setmealDishMapper;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        categoryMapper = mock(CategoryMapper.class);
+        dishMapper = mock(DishMapper.class);
+        dishFlavorMapper = mock(DishFlavorMapper.class);
+        setmealMapper = mock(SetmealMapper.class);
+        setmealDishMapper = mock(SetmealDishMapper.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(CatalogServiceImpl.VERSION_KEY)).thenReturn("1");
+
+        service = new CatalogServiceImpl();
+        ReflectionTestUtils.setField(service, "categoryMapper", categoryMapper);
+        ReflectionTestUtils.setField(service, "dishMapper", dishMapper);
+        ReflectionTestUtils.setField(service, "dishFlavorMapper", dishFlavorMapper);
+        ReflectionTestUtils.setField(service, "setmealMapper", setmealMapper);
+        ReflectionTestUtils.setField(service, "setmealDishMapper", setmealDishMapper);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+    }
+
+    @Test
+    void rowsWithNullKeysDoNotBreakSnapshot() {
+        Category dishCategory = Category.builder().id(10L).type(1).name("热菜").build();
+        Category brokenCategory = Category.builder().id(11L).name("缺少类型").build();
+        when(categoryMapper.list(null)).thenReturn(Arrays.asList(dishCategory, brokenCategory));
+
+        Dish dish = Dish.builder().id(1L).categoryId(10L).name("宫保鸡丁").status(StatusConstant.ENABLE).build();
+        Dish orphanDish = Dish.builder().id(2L).name("缺少分类").status(StatusConstant.ENABLE).build();
+        when(dishMapper.listAll()).thenReturn(Arrays.asList(dish, orphanDish));
+        when(dishFlavorMapper.getByDishStatus(StatusConstant.ENABLE)).thenReturn(Arrays.asList(
+                DishFlavor.builder().dishId(1L).name("辣度").build(),
+                DishFlavor.builder().name("缺少菜品").build()));
+
+        Setmeal setmeal = Setmeal.builder().id(100L).categoryId(20L).name("单人套餐").status(StatusConstant.ENABLE).build();
+        Setmeal orphanSetmeal = Setmeal.builder().id(101L).name("缺少分类").status(StatusConstant.ENABLE).build();
+        when(setmealMapper.list(any(Setmeal.class))).thenReturn(Arrays.asList(setmeal, orphanSetmeal));
+        when(setmealDishMapper.getBySetmealStatus(StatusConstant.ENABLE)).thenReturn(Collections.emptyList());
+
+        assertNull(service.listDishes(10L));
+        service.syncVersion();
+
+        assertNotNull(service.listDishes(10L));
+        assertEquals(1, service.listDishes(10L).size());
+        assertEquals(1, service.listDishes(10L).get(0).getFlavors().size());
+        assertEquals(Collections.singletonList(dishCategory), service.listCategories(1));
+        assertEquals(2, service.listCategories(null).size());
+        assertEquals(Collections.singletonList(setmeal), service.listSetmeals(20L));
+        assertNotNull(service.listDishItems(101L));
+    }
+}
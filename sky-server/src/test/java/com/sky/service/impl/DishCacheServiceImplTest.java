@@ -0,0 +1,125 @@
+package com.sky.service.impl;
+
+import com.sky.cache.StampedeGuard;
+import com.sky.properties.CacheStampedeProperties;
+import com.sky.vo.DishVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用内存Map模拟Redis，验证版本号递增后读请求不再读到旧数据
+ */
+class DishCacheServiceImplTest {
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    private DishCacheServiceImpl service;
+    private StampedeGuard stampedeGuard;
+    private CacheStampedeProperties properties;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> values.remove(invocation.<String>getArgument(0)) != null);
+        when(redisTemplate.expire(anyString(), anyLong(), eq(TimeUnit.SECONDS))).thenReturn(true);
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> stringOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(stringOperations);
+        when(stringOperations.get(anyString())).thenAnswer(invocation -> strings.get(invocation.<String>getArgument(0)));
+        when(stringOperations.increment(anyString())).thenAnswer(invocation -> Long.valueOf(
+                strings.merge(invocation.getArgument(0), "1", (old, one) -> String.valueOf(Long.parseLong(old) + 1))));
+
+        properties = new CacheStampedeProperties();
+        properties.setEarlyRefreshBeta(0);
+        stampedeGuard = new StampedeGuard();
+        ReflectionTestUtils.setField(stampedeGuard, "cacheStampedeProperties", properties);
+        ReflectionTestUtils.setField(stampedeGuard, "stringRedisTemplate", stringRedisTemplate);
+        stampedeGuard.init();
+
+        service = new DishCacheServiceImpl();
+        ReflectionTestUtils.setField(service, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(service, "stampedeGuard", stampedeGuard);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stampedeGuard.destroy();
+    }
+
+    @Test
+    void hitDoesNotCallLoader() {
+        AtomicInteger loads = new AtomicInteger();
+
+        service.get(1L, () -> dishes("v0", loads));
+        List<DishVO> cached = service.get(1L, () -> dishes("v0", loads));
+
+        assertEquals(1, loads.get());
+        assertEquals("v0", cached.get(0).getName());
+    }
+
+    @Test
+    void versionBumpHidesStaleDataAndRemovesOldKey() {
+        AtomicInteger loads = new AtomicInteger();
+        service.get(1L, () -> dishes("old", loads));
+        assertTrue(values.containsKey("dish_1_v0"));
+
+        service.evict(Collections.singletonList(1L));
+
+        assertFalse(values.containsKey("dish_1_v0"));
+        List<DishVO> fresh = service.get(1L, () -> dishes("new", loads));
+        assertEquals("new", fresh.get(0).getName());
+        assertEquals(2, loads.get());
+        assertTrue(values.containsKey("dish_1_v1"));
+    }
+
+    @Test
+    void evictOnlyAffectsGivenCategory() {
+        AtomicInteger loads = new AtomicInteger();
+        service.get(1L, () -> dishes("one", loads));
+        service.get(2L, () -> dishes("two", loads));
+
+        service.evict(Collections.singletonList(1L));
+
+        assertEquals("two", service.get(2L, () -> dishes("reloaded", loads)).get(0).getName());
+        assertEquals(2, loads.get());
+    }
+
+    private static List<DishVO> dishes(String name, AtomicInteger loads) {
+        loads.incrementAndGet();
+        DishVO dish = new DishVO();
+        dish.setName(name);
+        return Collections.singletonList(dish);
+    }
+}
@@ -0,0 +1,124 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+
+import static com.sky.service.impl.OrderExpiryServiceImpl.EXPIRY_KEY;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderExpiryServiceImplTest {
+
+    private OrderExpiryServiceImpl service;
+    private OrderMapper orderMapper;
+    private ZSetOperations<String, String> zSetOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        zSetOperations = mock(ZSetOperations.class);
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+
+        service = new OrderExpiryServiceImpl();
+        ReflectionTestUtils.setField(service, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void scheduleRegistersPaymentDeadline() {
+        LocalDateTime orderTime = LocalDateTime.now();
+        service.schedule(1L, orderTime);
+
+        long deadline = orderTime.plusMinutes(OrderExpiryServiceImpl.PAYMENT_TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        verify(zSetOperations).add(EXPIRY_KEY, "1", deadline);
+    }
+
+    @Test
+    void unscheduleRemovesMember() {
+        service.unschedule(1L);
+
+        verify(zSetOperations).remove(EXPIRY_KEY, "1");
+    }
+
+    @Test
+    void expireDueCancelsBeforeRemovingMember() {
+        when(zSetOperations.rangeByScore(eq(EXPIRY_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(Collections.singleton("1"));
+        when(orderMapper.updateByIdAndStatus(any(Orders.class), eq(Orders.PENDING_PAYMENT))).thenReturn(1);
+
+        service.expireDue();
+
+        InOrder inOrder = inOrder(orderMapper, zSetOperations);
+        inOrder.verify(orderMapper).updateByIdAndStatus(
+                argThat(orders -> orders.getId() == 1L && Orders.CANCELLED.equals(orders.getStatus())),
+                eq(Orders.PENDING_PAYMENT));
+        inOrder.verify(zSetOperations).remove(EXPIRY_KEY, "1");
+    }
+
+    @Test
+    void failedCancellationKeepsMemberForRetry() {
+        when(zSetOperations.rangeByScore(eq(EXPIRY_KEY), anyDouble(), anyDouble(), anyLong(), anyLong()))
+                .thenReturn(Collections.singleton("1"));
+        when(orderMapper.updateByIdAndStatus(any(Orders.class), eq(Orders.PENDING_PAYMENT)))
+                .thenThrow(new IllegalStateException("db down"));
+
+        service.expireDue();
+
+        verify(zSetOperations, never()).remove(EXPIRY_KEY, "1");
+    }
+
+    @Test
+    void localQueueCancelsOrderAtDeadline() {
+        when(zSetOperations.score(EXPIRY_KEY, "1")).thenReturn(1.0);
+        when(orderMapper.updateByIdAndStatus(any(Orders.class), eq(Orders.PENDING_PAYMENT))).thenReturn(1);
+
+        //截止时间已到
+        service.schedule(1L, LocalDateTime.now().minusMinutes(OrderExpiryServiceImpl.PAYMENT_TIMEOUT_MINUTES));
+
+        verify(orderMapper, timeout(2000)).updateByIdAndStatus(
+                argThat(orders -> orders.getId() == 1L), eq(Orders.PENDING_PAYMENT));
+        verify(zSetOperations, timeout(2000)).remove(EXPIRY_KEY, "1");
+    }
+
+    @Test
+    void localQueueSkipsUnscheduledOrder() {
+        //已支付的订单已从ZSET中移除
+        when(zSetOperations.score(EXPIRY_KEY, "1")).thenReturn(null);
+
+        service.schedule(1L, LocalDateTime.now().minusMinutes(OrderExpiryServiceImpl.PAYMENT_TIMEOUT_MINUTES));
+        service.unschedule(1L);
+
+        verify(zSetOperations, timeout(2000)).score(EXPIRY_KEY, "1");
+        verify(orderMapper, after(200).never()).updateByIdAndStatus(any(Orders.class), any());
+    }
+}
@@ -0,0 +1,139 @@
+package com.sky.service.impl;
+
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersCursorQueryDTO;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.vo.OrderVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 订单列表用一次IN查询批量加载明细，结果要与逐个订单查询明细一致
+ */
+class OrderServiceImplDetailTest {
+
+    private OrderServiceImpl service;
+    private OrderMapper orderMapper;
+    private OrderDetailMapper orderDetailMapper;
+
+    //模拟order_detail表，订单3没有明细
+    private final List<OrderDetail> detailTable = Arrays.asList(
+            detail(11L, 1L, "宫保鸡丁", 1),
+            detail(12L, 1L, "米饭", 2),
+            detail(21L, 2L, "水煮鱼", 1));
+
+    @BeforeEach
+    void setUp() {
+        orderMapper = mock(OrderMapper.class);
+        orderDetailMapper = mock(OrderDetailMapper.class);
+        when(orderDetailMapper.getByOrderId(anyLong())).thenAnswer(invocation -> {
+            Long orderId = invocation.getArgument(0);
+            return detailTable.stream().filter(d -> d.getOrderId().equals(orderId)).collect(Collectors.toList());
+        });
+        when(orderDetailMapper.getByOrderIds(anyList())).thenAnswer(invocation -> {
+            List<Long> orderIds = invocation.getArgument(0);
+            return detailTable.stream().filter(d -> orderIds.contains(d.getOrderId())).collect(Collectors.toList());
+        });
+        when(orderMapper.getById(anyLong()))
+                .thenAnswer(invocation -> Orders.builder().id(invocation.getArgument(0)).build());
+        when(orderMapper.cursorQuery(any(OrdersCursorQueryDTO.class)))
+                .thenReturn(Arrays.asList(order(1L), order(2L), order(3L)));
+
+        service = new OrderServiceImpl();
+        ReflectionTestUtils.setField(service, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(service, "orderDetailMapper", orderDetailMapper);
+        BaseContext.setCurrentId(100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchLoadedDetailsMatchPerOrderQuery() {
+        OrdersCursorQueryDTO query = new OrdersCursorQueryDTO();
+        query.setPageSize(10);
+
+        List<OrderVO> records = service.cursorPageQuery(query).getRecords();
+
+        assertEquals(3, records.size());
+        for (OrderVO orderVO : records) {
+            List<OrderDetail> expected = service.getOrderDetail(orderVO.getId()).getOrderDetailList();
+            assertEquals(expected, orderVO.getOrderDetailList());
+        }
+        //整页明细只查询一次
+        verify(orderDetailMapper, times(1)).getByOrderIds(Arrays.asList(1L, 2L, 3L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void orderWithoutDetailsGetsEmptyList() {
+        OrdersCursorQueryDTO query = new OrdersCursorQueryDTO();
+        query.setPageSize(10);
+
+        List<OrderVO> records = service.cursorPageQuery(query).getRecords();
+
+        OrderVO noDetails = records.get(2);
+        assertNotNull(noDetails.getOrderDetailList());
+        assertTrue(noDetails.getOrderDetailList().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void adminListBuildsDishSummaryFromBatchLoadedDetails() {
+        OrdersCursorQueryDTO query = new OrdersCursorQueryDTO();
+        query.setPageSize(10);
+
+        List<OrderVO> records = service.cursorConditionSearch(query).getRecords();
+
+        assertEquals("宫保鸡丁*1;米饭*2;", records.get(0).getOrderDishes());
+        assertEquals("水煮鱼*1;", records.get(1).getOrderDishes());
+        assertEquals("", records.get(2).getOrderDishes());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyPageDoesNotQueryDetails() {
+        when(orderMapper.cursorQuery(any(OrdersCursorQueryDTO.class))).thenReturn(new ArrayList<>());
+        OrdersCursorQueryDTO query = new OrdersCursorQueryDTO();
+        query.setPageSize(10);
+
+        assertTrue(service.cursorPageQuery(query).getRecords().isEmpty());
+        verify(orderDetailMapper, times(0)).getByOrderIds(anyList());
+    }
+
+    private static OrderVO order(Long id) {
+        OrderVO orderVO = new OrderVO();
+        orderVO.setId(id);
+        orderVO.setOrderTime(LocalDateTime.of(2026, 1, 1, 12, 0).minusMinutes(id));
+        return orderVO;
+    }
+
+    private static OrderDetail detail(Long id, Long orderId, String name, int number) {
+        return OrderDetail.builder().id(id).orderId(orderId).name(name).number(number).build();
+    }
+}
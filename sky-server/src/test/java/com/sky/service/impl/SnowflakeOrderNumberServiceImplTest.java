@@ -0,0 +1,120 @@
+package com.sky.service.impl;
+
+import com.sky.properties.OrderNumberProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SnowflakeOrderNumberServiceImplTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void concurrentNumbersAreUniqueAndIncreasingPerThread() throws Exception {
+        OrderNumberProperties properties = new OrderNumberProperties();
+        properties.setWorkerId(1);
+        SnowflakeOrderNumberServiceImpl service = newService(properties, mock(StringRedisTemplate.class));
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch startSignal = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    startSignal.await();
+                    long previous = -1;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = Long.parseLong(service.nextNumber());
+                        assertTrue(id > previous, "同一线程内订单号应递增");
+                        previous = id;
+                        ids.add(id);
+                    }
+                    return null;
+                }));
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            int total = THREADS * IDS_PER_THREAD;
+            assertEquals(total, ids.size(), "订单号不应重复");
+            assertTrue(total / seconds >= 50_000, "生成速度应不低于每秒5万个：" + total / seconds);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void differentWorkersNeverCollide() {
+        OrderNumberProperties first = new OrderNumberProperties();
+        first.setWorkerId(1);
+        OrderNumberProperties second = new OrderNumberProperties();
+        second.setWorkerId(2);
+        SnowflakeOrderNumberServiceImpl a = newService(first, mock(StringRedisTemplate.class));
+        SnowflakeOrderNumberServiceImpl b = newService(second, mock(StringRedisTemplate.class));
+
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < IDS_PER_THREAD; i++) {
+            numbers.add(a.nextNumber());
+            numbers.add(b.nextNumber());
+        }
+        assertEquals(2 * IDS_PER_THREAD, numbers.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refusesToGenerateAfterLeaseIsLost() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.increment(SnowflakeOrderNumberServiceImpl.WORKER_SEQ_KEY)).thenReturn(1L);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+
+        OrderNumberProperties properties = new OrderNumberProperties();
+        SnowflakeOrderNumberServiceImpl service = newService(properties, redisTemplate);
+        try {
+            service.nextNumber();
+
+            //租约已到期，续租脚本没有返回成功(mock默认返回null)，其他节点已占用所有编号
+            ReflectionTestUtils.setField(service, "leaseDeadline", 0L);
+            when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(false);
+
+            assertThrows(IllegalStateException.class, service::nextNumber);
+        } finally {
+            service.destroy();
+        }
+    }
+
+    private SnowflakeOrderNumberServiceImpl newService(OrderNumberProperties properties, StringRedisTemplate redisTemplate) {
+        SnowflakeOrderNumberServiceImpl service = new SnowflakeOrderNumberServiceImpl();
+        ReflectionTestUtils.setField(service, "orderNumberProperties", properties);
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+        service.init();
+        return service;
+    }
+}
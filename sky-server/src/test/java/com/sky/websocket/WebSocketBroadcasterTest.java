@@ -0,0 +1,108 @@
+package com.sky.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 集群广播：发布到Redis频道、订阅后推送本机客户端、按消息id去重
+ */
+class WebSocketBroadcasterTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+    private WebSocketServer webSocketServer;
+    private WebSocketBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        webSocketServer = mock(WebSocketServer.class);
+
+        broadcaster = new WebSocketBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(broadcaster, "webSocketServer", webSocketServer);
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", new SimpleMeterRegistry());
+        broadcaster.init();
+    }
+
+    @Test
+    void publishedMessageIsDeliveredByListener() {
+        broadcaster.broadcast("{\"type\":1}");
+
+        //发布时不直接推送，由订阅回调统一推送
+        verify(webSocketServer, never()).sendToAllClient(anyString());
+
+        broadcaster.onMessage(message(published()), null);
+
+        verify(webSocketServer).sendToAllClient("{\"type\":1}");
+    }
+
+    @Test
+    void duplicateIdIsDeliveredOnce() {
+        broadcaster.broadcast("{\"type\":2}");
+        String body = published();
+
+        broadcaster.onMessage(message(body), null);
+        broadcaster.onMessage(message(body), null);
+
+        verify(webSocketServer, times(1)).sendToAllClient("{\"type\":2}");
+    }
+
+    @Test
+    void distinctMessagesAreAllDelivered() {
+        broadcaster.broadcast("same");
+        broadcaster.broadcast("same");
+
+        ArgumentCaptor<String> bodies = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate, times(2)).convertAndSend(eq(WebSocketBroadcaster.CHANNEL), bodies.capture());
+        for (String body : bodies.getAllValues()) {
+            broadcaster.onMessage(message(body), null);
+        }
+
+        verify(webSocketServer, times(2)).sendToAllClient("same");
+    }
+
+    @Test
+    void redisFailureFallsBackToLocalDelivery() {
+        doThrow(new RedisConnectionFailureException("down"))
+                .when(stringRedisTemplate).convertAndSend(eq(WebSocketBroadcaster.CHANNEL), anyString());
+
+        broadcaster.broadcast("local");
+
+        verify(webSocketServer).sendToAllClient("local");
+    }
+
+    @Test
+    void malformedOrAnonymousMessageIsIgnored() {
+        broadcaster.onMessage(message("not json"), null);
+        broadcaster.onMessage(message("{\"payload\":\"no id\"}"), null);
+
+        verify(webSocketServer, never()).sendToAllClient(anyString());
+    }
+
+    private String published() {
+        ArgumentCaptor<String> body = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(WebSocketBroadcaster.CHANNEL), body.capture());
+        return body.getValue();
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(WebSocketBroadcaster.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}